@@ -1,20 +1,75 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ghulam.DaemonClient;
 import com.ghulam.Runner;
 
 public class App {
     public static void main(String[] args) throws Exception {
         // AstGenerator.main(args);
 
-        if (args.length < 1) {
+        // the client only talks to a daemon, nothing else is loaded
+        for (String arg : args)
+            if (arg.equals("--client") || arg.startsWith("--client="))
+                System.exit(DaemonClient.run(args));
+
+        List<String> files = new ArrayList<>();
+        String aot_jar = null;
+        String batch_dir = null;
+        Path daemon_socket = null;
+        int jobs = 0;
+        for (String arg : args) {
+            if (arg.startsWith("--engine="))
+                Runner.use_engine(arg.substring("--engine=".length()));
+            else if (arg.startsWith("--output="))
+                Runner.use_output(arg.substring("--output=".length()));
+            else if (arg.equals("--no-optimize"))
+                Runner.use_optimizer(false);
+            else if (arg.equals("--memo-stats"))
+                Runner.use_memo_stats(true);
+            else if (arg.equals("--stats"))
+                Runner.use_stats();
+            else if (arg.equals("--profile"))
+                Runner.use_profiler(null);
+            else if (arg.startsWith("--profile="))
+                Runner.use_profiler(Paths.get(arg.substring("--profile=".length())));
+            else if (arg.equals("--cache"))
+                Runner.use_cache(Runner.default_cache_dir());
+            else if (arg.startsWith("--cache="))
+                Runner.use_cache(Paths.get(arg.substring("--cache=".length())));
+            else if (arg.startsWith("--batch="))
+                batch_dir = arg.substring("--batch=".length());
+            else if (arg.startsWith("--jobs="))
+                jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+            else if (arg.equals("--daemon"))
+                daemon_socket = Runner.default_socket();
+            else if (arg.startsWith("--daemon="))
+                daemon_socket = Paths.get(arg.substring("--daemon=".length()));
+            else if (arg.startsWith("--aot="))
+                aot_jar = arg.substring("--aot=".length());
+            else
+                files.add(arg);
+        }
+
+        if (daemon_socket != null) {
+            Runner.run_daemon(daemon_socket);
+        } else if (batch_dir != null) {
+            Runner.run_batch(batch_dir, jobs);
+        } else if (files.size() < 1) {
             System.err.println("ERROR: Please provide an input source file.");
             System.exit(1);
-        } else if (args.length == 1) {
+        } else if (files.size() == 1) {
 
             // check for .bhai file is omitted
-            String source_file = args[0];
-            Runner.run_source_file(source_file);
+            String source_file = files.get(0);
+            if (aot_jar != null)
+                Runner.compile_source_file(source_file, aot_jar);
+            else
+                Runner.run_source_file(source_file);
         } else {
             Runner.repl_mode();
         }
     }
 }
-
@@ -0,0 +1,32 @@
+#!/bin/sh
+# Times the bench scripts on each engine.
+#
+#   javac -d target App.java com/ghulam/*.java
+#   bench/run.sh [classes dir] [runs]
+#
+# prints the best wall time of <runs> runs (default 5) per script and engine.
+
+CLASSES=${1:-target}
+RUNS=${2:-5}
+DIR=$(dirname "$0")
+
+now_ms() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+for script in "$DIR"/calls/*.bhai; do
+    for engine in tree vm; do
+        best=
+        i=0
+        while [ $i -lt "$RUNS" ]; do
+            start=$(now_ms)
+            java -cp "$CLASSES" App --engine=$engine "$script" > /dev/null || exit 1
+            took=$(($(now_ms) - start))
+            if [ -z "$best" ] || [ $took -lt $best ]; then
+                best=$took
+            fi
+            i=$((i + 1))
+        done
+        printf '%-24s %-5s %6d ms\n' "$(basename "$script")" $engine $best
+    done
+done
@@ -0,0 +1,63 @@
+#!/bin/bash
+# Time to first output of a short script, with and without class data sharing.
+#
+#   mvn -B package && bin/cds.sh
+#   bench/startup.sh [runs] [script]
+#
+# Every mode starts a fresh JVM <runs> times (default 20) and prints the
+# median milliseconds until the first line of output shows up and until
+# the program exits:
+#
+#   no-cds   -Xshare:off, every class is loaded from its jar
+#   jdk-cds  the JDK's own archive only (what plain `java` does)
+#   app-cds  core/target/bhai.jsa from bin/cds.sh, as bin/bhai runs it
+#   client   app-cds, but only --client: the script runs in a daemon
+#            (start one first with `bin/bhai --daemon &`, then CLIENT=1)
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+JAR=$ROOT/core/target/bhai-lang-1.0-SNAPSHOT.jar
+ARCHIVE=$ROOT/core/target/bhai.jsa
+RUNS=${1:-20}
+SCRIPT=${2:-$ROOT/bench/startup/hello.bhai}
+
+if [ ! -f "$ARCHIVE" ]; then
+    echo "ERROR: $ARCHIVE is missing, run bin/cds.sh first." >&2
+    exit 1
+fi
+
+now_us() {
+    echo $(($(date +%s%N) / 1000))
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'
+}
+
+# prints "<first output us> <exit us>" for one run
+measure() {
+    local start first
+    start=$(now_us)
+    java "$@" -cp "$JAR" App $APP_ARGS "$SCRIPT" | {
+        IFS= read -r _
+        first=$(now_us)
+        cat > /dev/null
+        echo $((first - start)) $(($(now_us) - start))
+    }
+}
+
+run_mode() {
+    local name=$1
+    shift
+    local results i
+    results=$(for i in $(seq "$RUNS"); do measure "$@"; done)
+    printf '%-8s first output %5d ms   exit %5d ms\n' "$name" \
+        $(($(echo "$results" | cut -d' ' -f1 | median) / 1000)) \
+        $(($(echo "$results" | cut -d' ' -f2 | median) / 1000))
+}
+
+run_mode no-cds -Xshare:off
+run_mode jdk-cds -Xshare:auto
+run_mode app-cds -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto
+if [ -n "$CLIENT" ]; then
+    APP_ARGS=--client run_mode client -XX:SharedArchiveFile="$ARCHIVE" -Xshare:auto
+fi
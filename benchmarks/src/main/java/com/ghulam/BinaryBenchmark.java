@@ -0,0 +1,72 @@
+package com.ghulam;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Interpreter.visitBinaryExpr on prebuilt nodes, nodes keep their specialization between calls
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryBenchmark {
+    private Interpreter interpreter;
+    private Expr.Binary add;
+    private Expr.Binary nested;
+    private Expr.Binary less;
+    private Expr.Binary concat;
+
+    @Setup
+    public void setup() {
+        interpreter = new Interpreter();
+        add = binary(number(3), TokenType.PLUS_OP_TOKEN, "+", number(4));
+
+        // (1 + 2) * (3 - 4) / 5
+        Expr product = binary(binary(number(1), TokenType.PLUS_OP_TOKEN, "+", number(2)),
+                TokenType.STAR_OP_TOKEN, "*", binary(number(3), TokenType.MINUS_OP_TOKEN, "-", number(4)));
+        nested = binary(product, TokenType.SLASH_OP_TOKEN, "/", number(5));
+
+        less = binary(number(1), TokenType.LESS_TOKEN, "<", number(2));
+        concat = binary(new Expr.Literal("bhai "), TokenType.PLUS_OP_TOKEN, "+", new Expr.Literal("lang"));
+    }
+
+    @Benchmark
+    public Object add() {
+        return interpreter.visitBinaryExpr(add);
+    }
+
+    @Benchmark
+    public Object nested_arithmetic() {
+        return interpreter.visitBinaryExpr(nested);
+    }
+
+    @Benchmark
+    public Object compare() {
+        return interpreter.visitBinaryExpr(less);
+    }
+
+    @Benchmark
+    public Object string_concat() {
+        return interpreter.visitBinaryExpr(concat);
+    }
+
+    // helper
+    private static Expr.Literal number(double value) {
+        return new Expr.Literal(value);
+    }
+
+    private static Expr.Binary binary(Expr left, TokenType type, String lexeme, Expr right) {
+        return new Expr.Binary(left, new Token(type, lexeme, null, 1), right);
+    }
+}
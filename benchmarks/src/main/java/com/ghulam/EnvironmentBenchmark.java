@@ -0,0 +1,54 @@
+package com.ghulam;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// variable lookups: a resolved local <depth> frames up, and a global by name
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvironmentBenchmark {
+    @Param({ "0", "1", "4", "16" })
+    public int depth;
+
+    private Environment globals;
+    private Environment innermost;
+    private Token global_name;
+
+    @Setup
+    public void setup() {
+        globals = new Environment();
+        global_name = new Token(TokenType.IDENTIFIER_TOKEN, "counter", null, 1);
+        globals.define("counter", 1.0);
+
+        Environment environment = new Environment(globals, 4);
+        environment.define_at(0, 2.0);
+        for (int i = 0; i < depth; i++)
+            environment = new Environment(environment, 4);
+        innermost = environment;
+    }
+
+    @Benchmark
+    public Object get_at() {
+        return innermost.get_at(depth, 0);
+    }
+
+    @Benchmark
+    public Object get_global() {
+        return globals.get(global_name);
+    }
+}
@@ -0,0 +1,54 @@
+package com.ghulam;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Sources for the benchmarks: the samples under code/ (packaged as
+ * programs/<name>.bhai) and generated programs of a given size.
+ */
+final class Programs {
+    private Programs() {
+    }
+
+    // "factorial", "fibo", "sample", or "generated_<functions>"
+    static String source(String name) {
+        if (name.startsWith("generated_"))
+            return generate(Integer.parseInt(name.substring("generated_".length())));
+
+        try (InputStream in = Programs.class.getResourceAsStream("/programs/" + name + ".bhai")) {
+            if (in == null)
+                throw new IllegalArgumentException("no program " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // functions with locals, branches and loops, each called once at the end
+    static String generate(int functions) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < functions; i++) {
+            source.append("karna_bhai f").append(i).append(" (a, b) {\n");
+            source.append("    bhai_ye_hai x = a * ").append(i % 7 + 2).append(" + b;\n");
+            source.append("    bhai_ye_hai name = \"f").append(i).append("\";\n");
+            source.append("    chalao_bhai (bhai_ye_hai i = 0; i < 10; i = i + 1) {\n");
+            source.append("        agar_bhai (x > 100 and i != 3) {\n");
+            source.append("            x = x - i / 2;\n");
+            source.append("        } warna_bhai {\n");
+            source.append("            x = x + i * 3;\n");
+            source.append("        }\n");
+            source.append("    }\n");
+            source.append("    lauta_bhai x;\n");
+            source.append("}\n\n");
+        }
+
+        source.append("bhai_ye_hai total = 0;\n");
+        for (int i = 0; i < functions; i++)
+            source.append("total = total + f").append(i).append("(").append(i).append(", 1);\n");
+        source.append("bol_bhai total;\n");
+        return source.toString();
+    }
+}
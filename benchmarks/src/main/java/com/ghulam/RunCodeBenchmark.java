@@ -0,0 +1,52 @@
+package com.ghulam;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// scan + parse + optimize + resolve + run, output is thrown away
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunCodeBenchmark {
+    @Param({ "factorial", "fibo", "sample", "generated_10", "generated_100" })
+    public String program;
+
+    @Param({ "tree", "vm" })
+    public String engine;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = Programs.source(program);
+        Runner.use_engine(engine);
+        Runner.use_output(new OutputSink() {
+            @Override
+            public void print(String text) {
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+    }
+
+    @Benchmark
+    public void run_code() {
+        Runner.run_code(source);
+    }
+}
@@ -0,0 +1,50 @@
+package com.ghulam;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerBenchmark {
+    @Param({ "factorial", "fibo", "sample", "generated_10", "generated_1000" })
+    public String program;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = Programs.source(program);
+    }
+
+    @Benchmark
+    public List<Token> scan_tokens() {
+        return new Scanner(source).scan_tokens();
+    }
+
+    // what the Parser sees: one token at a time, nothing kept
+    @Benchmark
+    public int next_token() {
+        Scanner scanner = new Scanner(new StringReader(source));
+        int count = 0;
+        while (scanner.next_token().type != TokenType.EOF_TOKEN)
+            ++count;
+        return count;
+    }
+}
@@ -0,0 +1,64 @@
+package com.ghulam;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// a small rule run with new bindings every time: compiled once vs eval(String)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptEngineBenchmark {
+    private static final String RULE = "agar_bhai (amount > 100 and vip) lauta_bhai amount * 0.9;\n"
+            + "lauta_bhai amount;\n";
+
+    private BhaiScriptEngine engine;
+    private CompiledScript compiled;
+    private int amount = 0;
+
+    @Setup
+    public void setup() throws ScriptException {
+        engine = new BhaiScriptEngine();
+        compiled = engine.compile(RULE);
+    }
+
+    @Benchmark
+    public Object compiled() throws ScriptException {
+        return compiled.eval(context());
+    }
+
+    @Benchmark
+    public Object eval() throws ScriptException {
+        return engine.eval(RULE, context());
+    }
+
+    // helper
+    private ScriptContext context() {
+        Bindings bindings = engine.createBindings();
+        bindings.put("amount", amount++ & 255);
+        bindings.put("vip", true);
+        ScriptContext context = new SimpleScriptContext();
+        context.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        context.setWriter(Writer.nullWriter());
+        return context;
+    }
+}
@@ -0,0 +1,56 @@
+#!/bin/sh
+# Makes the class data sharing (AppCDS) archive bin/bhai starts with.
+#
+#   mvn -B package && bin/cds.sh [training scripts...]
+#
+# Training runs every script (default: code/*.bhai and the startup bench
+# script) on both engines, with and without --cache, and once through
+# --client against a daemon of its own, and records the classes each run
+# loads. The union of those lists is dumped into
+# core/target/bhai.jsa. Run it again after rebuilding the jar: the JVM
+# ignores an archive made for another jar or another java.
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+JAR=$ROOT/core/target/bhai-lang-1.0-SNAPSHOT.jar
+ARCHIVE=$ROOT/core/target/bhai.jsa
+
+if [ ! -f "$JAR" ]; then
+    echo "ERROR: $JAR is missing, run 'mvn -B package' first." >&2
+    exit 1
+fi
+if [ $# -eq 0 ]; then
+    set -- "$ROOT"/code/*.bhai "$ROOT"/bench/startup/hello.bhai
+fi
+
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+n=0
+for script in "$@"; do
+    for flags in "--engine=tree" "--engine=vm" "--engine=tree --cache=$WORK/cache" "--engine=vm --cache=$WORK/cache"; do
+        n=$((n + 1))
+        java -XX:DumpLoadedClassList="$WORK/$n.classlist" -cp "$JAR" App $flags "$script" > /dev/null ||
+            echo "warning: training run failed: $flags $script" >&2
+    done
+done
+
+# the client loads next to nothing of bhai, but the socket classes are worth sharing
+java -cp "$JAR" App --daemon="$WORK/daemon.sock" 2> /dev/null &
+DAEMON=$!
+i=0
+while [ ! -S "$WORK/daemon.sock" ] && [ $i -lt 100 ]; do
+    sleep 0.1
+    i=$((i + 1))
+done
+n=$((n + 1))
+java -XX:DumpLoadedClassList="$WORK/$n.classlist" -cp "$JAR" App --client="$WORK/daemon.sock" "$1" > /dev/null ||
+    echo "warning: training run failed: --client $1" >&2
+kill $DAEMON
+
+# keep the first time each class shows up, the order is the load order
+cat "$WORK"/*.classlist | awk '!seen[$0]++' > "$WORK/bhai.classlist"
+
+java -Xshare:dump -XX:SharedClassListFile="$WORK/bhai.classlist" -XX:SharedArchiveFile="$ARCHIVE" \
+    -cp "$JAR" > "$WORK/dump.log" 2>&1 || { cat "$WORK/dump.log" >&2; exit 1; }
+
+echo "$(wc -l < "$WORK/bhai.classlist") classes from $n training runs -> $ARCHIVE"
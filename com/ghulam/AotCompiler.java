@@ -0,0 +1,687 @@
+package com.ghulam;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import com.ghulam.Expr.Assign;
+import com.ghulam.Expr.Binary;
+import com.ghulam.Expr.Call;
+import com.ghulam.Expr.Grouping;
+import com.ghulam.Expr.Literal;
+import com.ghulam.Expr.Logical;
+import com.ghulam.Expr.Unary;
+import com.ghulam.Expr.Variable;
+import com.ghulam.Stmt.Block;
+import com.ghulam.Stmt.Expression;
+import com.ghulam.Stmt.Function;
+import com.ghulam.Stmt.If;
+import com.ghulam.Stmt.Parallel;
+import com.ghulam.Stmt.Print;
+import com.ghulam.Stmt.Return;
+import com.ghulam.Stmt.Var;
+import com.ghulam.Stmt.While;
+
+/*
+ * Ahead-of-time compiler: turns a resolved program into a Java class,
+ * compiles it with the JDK's javac and packs it, together with the
+ * runtime classes, into a jar that `java -jar` runs directly.
+ *
+ * - every karna_bhai becomes a static method plus a small AotRuntime.Function
+ *   object that is the value stored in variables
+ * - resolved locals become Java locals, globals become static fields
+ * - calls to a top-level function check that the global still holds it
+ *   and then call its static method directly, so HotSpot can inline them
+ */
+public class AotCompiler implements Expr.Visitor<String>, Stmt.Visitor<Void> {
+    static final String CLASS_NAME = "BhaiProgram";
+    private static final int STATEMENTS_PER_PART = 64;
+
+    private final StringBuilder members = new StringBuilder();
+    private final Map<String, String> global_fields = new LinkedHashMap<>();
+    private final Map<Object, String> constant_fields = new HashMap<>();
+    private final Map<Function, Integer> function_ids = new IdentityHashMap<>();
+    private final Map<String, Function> top_functions = new HashMap<>();
+
+    // state of the method being emitted
+    private StringBuilder out;
+    private int indent;
+    private List<String[]> scopes;
+    private int local_count;
+    private int temp_count;
+    private boolean top_level;
+    private Function function; // null at the top level
+    private String[] param_locals;
+    private boolean tail_loop;
+
+    // Java source of the whole program
+    public String generate(List<Stmt> stmts) {
+        // top-level functions declared once get a direct call path
+        Map<String, Integer> declared = new HashMap<>();
+        for (Stmt stmt : stmts) {
+            if (stmt instanceof Function) {
+                Function function = (Function) stmt;
+                function_ids.put(function, function_ids.size());
+                declared.merge(function.name.token, 1, Integer::sum);
+                top_functions.put(function.name.token, function);
+            }
+        }
+        top_functions.keySet().removeIf(name -> declared.get(name) > 1);
+        for (Function function : top_functions.values())
+            emit_call_stub(function);
+
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < stmts.size(); i += STATEMENTS_PER_PART) {
+            String name = "part" + parts.size();
+            parts.add(name);
+
+            begin_method();
+            top_level = true;
+            for (Stmt stmt : stmts.subList(i, Math.min(stmts.size(), i + STATEMENTS_PER_PART)))
+                emit(stmt);
+            end_method("    static void " + name + "() {\n", "");
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append("package com.ghulam;\n\n");
+        source.append("// generated from a .bhai program by AotCompiler\n");
+        source.append("public final class " + CLASS_NAME + " {\n");
+
+        for (var e : global_fields.entrySet()) {
+            String initial = Natives.all().containsKey(e.getKey())
+                    ? "Natives.all().get(" + java_literal(e.getKey()) + ")"
+                    : "AotRuntime.UNDEFINED";
+            source.append("    static Object " + e.getValue() + " = " + initial + "; // " + e.getKey() + "\n");
+        }
+        for (var e : constant_fields.entrySet())
+            source.append("    static final Object " + e.getValue() + " = " + java_literal(e.getKey()) + ";\n");
+        source.append("\n");
+
+        source.append("    public static void main(String[] args) {\n");
+        source.append("        AotRuntime.start(args);\n");
+        source.append("        try {\n");
+        for (String part : parts)
+            source.append("            " + part + "();\n");
+        source.append("        } catch (AotRuntime.Stop stop) {\n");
+        source.append("            // top-level lauta_bhai\n");
+        source.append("        } catch (RuntimeError error) {\n");
+        source.append("            AotRuntime.runtime_error(error);\n");
+        source.append("        } catch (Exception ex) {\n");
+        source.append("            ex.printStackTrace();\n");
+        source.append("        }\n");
+        source.append("        AotRuntime.finish();\n");
+        source.append("    }\n\n");
+
+        source.append(members);
+        source.append("}\n");
+        return source.toString();
+    }
+
+    // compile the generated source and write a runnable jar
+    public void write_jar(List<Stmt> stmts, Path jar_file) throws IOException {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null)
+            throw new IOException("no Java compiler available, AOT mode needs a JDK");
+
+        Path work_dir = Files.createTempDirectory("bhai-aot");
+        try {
+            Path source_file = work_dir.resolve(CLASS_NAME + ".java");
+            Files.write(source_file, generate(stmts).getBytes(StandardCharsets.UTF_8));
+
+            Path runtime = runtime_location();
+            Path classes = Files.createDirectories(work_dir.resolve("classes"));
+            int status = javac.run(null, null, null,
+                    "-nowarn", "-encoding", "UTF-8",
+                    "-classpath", runtime.toString(),
+                    "-d", classes.toString(),
+                    source_file.toString());
+            if (status != 0)
+                throw new IOException("javac failed on the generated program");
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "com.ghulam." + CLASS_NAME);
+
+            try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(jar_file), manifest)) {
+                copy_runtime(runtime, jar);
+                for (Path file : list_files(classes))
+                    add_entry(jar, classes.relativize(file).toString().replace('\\', '/'), Files.newInputStream(file));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(work_dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(file);
+            }
+        }
+    }
+
+    @Override
+    public Void visitBlockStmt(Block stmt) {
+        line("{");
+        indent++;
+        if (stmt.slot_count > 0)
+            scopes.add(new String[stmt.slot_count]);
+
+        for (Stmt e : stmt.statements)
+            emit(e);
+
+        if (stmt.slot_count > 0)
+            scopes.remove(scopes.size() - 1);
+        indent--;
+        line("}");
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Expression stmt) {
+        line("AotRuntime.discard(" + emit(stmt.expression) + ");");
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Print stmt) {
+        line("AotRuntime.print(" + emit(stmt.expression) + ");");
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Var stmt) {
+        String value = stmt.initializer == null ? "null" : emit(stmt.initializer);
+        define(stmt.name, stmt.slot, value);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(If stmt) {
+        line("if (AotRuntime.truthy(" + emit(stmt.condition) + "))");
+        emit_nested(stmt.then_branch);
+        if (stmt.else_branch != null) {
+            line("else");
+            emit_nested(stmt.else_branch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(While stmt) {
+        line("while (AotRuntime.truthy(" + emit(stmt.condition) + "))");
+        emit_nested(stmt.body);
+        return null;
+    }
+
+    // one iteration after the other, as the chalao_bhai it reads like
+    @Override
+    public Void visitParallelStmt(Parallel stmt) {
+        // one iteration after the other, counted like ParallelLoop: the
+        // counter is start + k * step, against a limit worked out once
+        Binary condition = (Binary) stmt.condition;
+        Object step = ((Literal) ((Binary) ((Assign) stmt.increment).value).right).value;
+
+        // the start is resolved outside the loop's scope, the limit in it
+        String start = emit(stmt.counter.initializer);
+        line("{");
+        indent++;
+        scopes.add(new String[stmt.slot_count]);
+        define(stmt.counter.name, stmt.counter.slot, start);
+        String counter = local(0, stmt.counter.slot);
+        String first = "l" + local_count++;
+        line("Object " + first + " = " + counter + ";");
+        String limit = "l" + local_count++;
+        line("Object " + limit + " = " + emit(condition.right) + ";");
+        String k = "l" + local_count++;
+
+        line("AotRuntime.parallel_enter(" + first + ", " + limit + ", " + stmt.keyword.line + ");");
+        line("try {");
+        indent++;
+        String compare = condition.operator.type == TokenType.LESS_EQUAL_TOKEN ? " <= " : " < ";
+        line("for (double " + k + " = 0; (double) (" + counter + " = (double) " + first + " + " + k + " * "
+                + java_literal(step) + ")" + compare + "(double) " + limit + "; " + k + "++) {");
+        indent++;
+        emit(stmt.body);
+        indent--;
+        line("}");
+        indent--;
+        line("} finally {");
+        line("    AotRuntime.parallel_exit();");
+        line("}");
+
+        scopes.remove(scopes.size() - 1);
+        indent--;
+        line("}");
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Function stmt) {
+        int id = function_ids.computeIfAbsent(stmt, e -> function_ids.size());
+        emit_function(stmt, id);
+        define(stmt.name, stmt.slot, "F" + id + ".INSTANCE");
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Return stmt) {
+        if (stmt.tail && is_self_call((Call) stmt.value)) {
+            emit_self_tail_call((Call) stmt.value);
+            return null;
+        }
+
+        String value = stmt.value == null ? "null" : emit(stmt.value);
+
+        // 'if (true)' keeps javac from rejecting statements after it
+        if (top_level)
+            line("if (true) { AotRuntime.discard(" + value + "); throw AotRuntime.Stop.STOP; }");
+        else
+            line("if (true) return " + value + ";");
+        return null;
+    }
+
+    @Override
+    public String visitGroupingExpr(Grouping expr) {
+        return "(" + emit(expr.expression) + ")";
+    }
+
+    @Override
+    public String visitLiteralExpr(Literal expr) {
+        if (expr.value == null)
+            return "null";
+        if (expr.value instanceof Boolean)
+            return (boolean) expr.value ? "Boolean.TRUE" : "Boolean.FALSE";
+
+        return constant_fields.computeIfAbsent(expr.value, e -> "k" + constant_fields.size());
+    }
+
+    @Override
+    public String visitVariableExpr(Variable expr) {
+        if (expr.depth < 0) {
+            return "AotRuntime.get(" + global(expr.name.token) + ", " + java_literal(expr.name.token) + ", "
+                    + expr.name.line + ")";
+        }
+        return local(expr.depth, expr.slot);
+    }
+
+    @Override
+    public String visitAssignExpr(Assign expr) {
+        String value = emit(expr.value);
+        if (expr.depth < 0) {
+            String field = global(expr.name.token);
+            return "(" + field + " = AotRuntime.set(" + field + ", " + value + ", "
+                    + java_literal(expr.name.token) + ", " + expr.name.line + "))";
+        }
+        return "(" + local(expr.depth, expr.slot) + " = " + value + ")";
+    }
+
+    @Override
+    public String visitLogicalExpr(Logical expr) {
+        String temp = "t" + temp_count++;
+        String left = emit(expr.left);
+        String right = emit(expr.right);
+
+        if (expr.operator.type == TokenType.OR_TOKEN)
+            return "(AotRuntime.truthy(" + temp + " = " + left + ") ? " + temp + " : " + right + ")";
+        return "(!AotRuntime.truthy(" + temp + " = " + left + ") ? " + temp + " : " + right + ")";
+    }
+
+    @Override
+    public String visitUnaryExpr(Unary expr) {
+        String right = emit(expr.right);
+
+        switch (expr.operator.type) {
+            case BANG_TOKEN:
+                return "AotRuntime.not(" + right + ")";
+            case MINUS_OP_TOKEN:
+                return "AotRuntime.neg(" + right + ")";
+
+            default:
+                return "null";
+        }
+    }
+
+    @Override
+    public String visitBinaryExpr(Binary expr) {
+        String operands = "(" + emit(expr.left) + ", " + emit(expr.right) + ")";
+
+        switch (expr.operator.type) {
+            case MINUS_OP_TOKEN:
+                return "AotRuntime.sub" + operands;
+            case PLUS_OP_TOKEN:
+                return "AotRuntime.add" + operands;
+            case STAR_OP_TOKEN:
+                return "AotRuntime.mul" + operands;
+            case SLASH_OP_TOKEN:
+                return "AotRuntime.div" + operands;
+            case EQUAL_EQUAL_TOKEN:
+                return "AotRuntime.eq" + operands;
+            case BANG_EQUAL_TOKEN:
+                return "AotRuntime.ne" + operands;
+            case LESS_TOKEN:
+                return "AotRuntime.lt" + operands;
+            case LESS_EQUAL_TOKEN:
+                return "AotRuntime.le" + operands;
+            case GREATER_TOKEN:
+                return "AotRuntime.gt" + operands;
+            case GREATER_EQUAL_TOKEN:
+                return "AotRuntime.ge" + operands;
+
+            default:
+                return "null";
+        }
+    }
+
+    @Override
+    public String visitCallExpr(Call expr) {
+        String callee = emit(expr.callee);
+        List<String> arguments = new ArrayList<>();
+        for (Expr argument : expr.arguments)
+            arguments.add(emit(argument));
+
+        // known top-level function with matching arity: guarded direct call
+        if (expr.callee instanceof Variable && ((Variable) expr.callee).depth < 0) {
+            Function target = top_functions.get(((Variable) expr.callee).name.token);
+            if (target != null && target.params.size() == arguments.size()) {
+                List<String> operands = new ArrayList<>();
+                operands.add(callee);
+                operands.addAll(arguments);
+                operands.add(String.valueOf(expr.paren.line));
+                return "c" + function_ids.get(target) + "(" + String.join(", ", operands) + ")";
+            }
+        }
+
+        return "AotRuntime.call(" + callee + ", new Object[] { " + String.join(", ", arguments) + " }, "
+                + expr.paren.line + ")";
+    }
+
+    // helper
+    private void emit(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private String emit(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // if/while bodies always get braces, even for a single statement
+    private void emit_nested(Stmt stmt) {
+        if (stmt instanceof Block) {
+            emit(stmt);
+            return;
+        }
+
+        line("{");
+        indent++;
+        emit(stmt);
+        indent--;
+        line("}");
+    }
+
+    private void line(String text) {
+        for (int i = 0; i < indent; i++)
+            out.append("    ");
+        out.append(text).append('\n');
+    }
+
+    private void begin_method() {
+        out = new StringBuilder();
+        indent = 2;
+        scopes = new ArrayList<>();
+        local_count = 0;
+        temp_count = 0;
+    }
+
+    // wraps the emitted body in a method header, temps are declared up front
+    private void end_method(String header, String footer) {
+        members.append(header);
+        for (int i = 0; i < temp_count; i++)
+            members.append("        Object t" + i + " = null;\n");
+        members.append(out);
+        members.append(footer);
+        members.append("    }\n\n");
+    }
+
+    private void emit_function(Function stmt, int id) {
+        StringBuilder enclosing_out = out;
+        int enclosing_indent = indent;
+        List<String[]> enclosing_scopes = scopes;
+        int enclosing_locals = local_count;
+        int enclosing_temps = temp_count;
+        boolean enclosing_top = top_level;
+        Function enclosing_function = function;
+        String[] enclosing_params = param_locals;
+        boolean enclosing_tail_loop = tail_loop;
+
+        begin_method();
+        top_level = false;
+        function = stmt;
+        tail_loop = false;
+
+        String[] scope = new String[stmt.slot_count];
+        List<String> params = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < stmt.params.size(); i++) {
+            scope[i] = "l" + local_count++;
+            params.add("Object " + scope[i]);
+            arguments.add("arguments[" + i + "]");
+        }
+        scopes.add(scope);
+        param_locals = scope;
+
+        for (Stmt e : stmt.body)
+            emit(e);
+
+        String footer = "        return null;\n";
+        if (tail_loop) {
+            // self tail calls reassign the params and jump back here
+            String body = out.toString().replaceAll("(?m)^", "    ");
+            out = new StringBuilder("        tail: while (true) {\n").append(body)
+                    .append("            return null;\n")
+                    .append("        }\n");
+            footer = "";
+        }
+
+        List<String> locals = Arrays.asList(Arrays.copyOf(scope, stmt.params.size()));
+        if (stmt.pure) {
+            // f<id> looks in the memo m<id>, the body goes to b<id>
+            members.append("    static final Memo m" + id + " = new Memo(" + java_literal(stmt.name.token) + ", "
+                    + stmt.name.line + ", AotRuntime.memo_counters);\n\n");
+            members.append("    static Object f" + id + "(" + String.join(", ", params) + ") {\n");
+            members.append("        Object key = Memo.key(" + String.join(", ", locals) + ");\n");
+            members.append("        Object value = m" + id + ".get(key);\n");
+            members.append("        if (value == Memo.MISSING) {\n");
+            members.append("            value = b" + id + "(" + String.join(", ", locals) + ");\n");
+            members.append("            m" + id + ".put(key, value);\n");
+            members.append("        }\n");
+            members.append("        return value;\n");
+            members.append("    }\n\n");
+        }
+
+        end_method("    // " + (stmt.pure ? "yaad_rakh_bhai " : "") + "karna_bhai " + stmt.name.token + " (line "
+                + stmt.name.line + ")\n"
+                + "    static Object " + (stmt.pure ? "b" : "f") + id + "(" + String.join(", ", params) + ") {\n",
+                footer);
+
+        members.append("    static final class F" + id + " extends AotRuntime.Function {\n");
+        members.append("        static final F" + id + " INSTANCE = new F" + id + "();\n\n");
+        members.append("        F" + id + "() {\n");
+        members.append("            super(" + stmt.params.size() + ");\n");
+        members.append("        }\n\n");
+        members.append("        @Override\n");
+        members.append("        public Object invoke(Object[] arguments) {\n");
+        members.append("            return f" + id + "(" + String.join(", ", arguments) + ");\n");
+        members.append("        }\n");
+        members.append("    }\n\n");
+
+        out = enclosing_out;
+        indent = enclosing_indent;
+        scopes = enclosing_scopes;
+        local_count = enclosing_locals;
+        temp_count = enclosing_temps;
+        top_level = enclosing_top;
+        function = enclosing_function;
+        param_locals = enclosing_params;
+        tail_loop = enclosing_tail_loop;
+    }
+
+    // lauta_bhai f(...) inside f itself, with the right number of arguments
+    private boolean is_self_call(Call call) {
+        if (!(call.callee instanceof Variable) || ((Variable) call.callee).depth >= 0)
+            return false;
+
+        Function target = top_functions.get(((Variable) call.callee).name.token);
+        return target != null && target == function && target.params.size() == call.arguments.size();
+    }
+
+    // evaluate callee and arguments in order, then loop if the callee is still f
+    private void emit_self_tail_call(Call call) {
+        int id = function_ids.get(function);
+        String callee = "t" + temp_count++;
+        line(callee + " = " + emit(call.callee) + ";");
+
+        List<String> operands = new ArrayList<>();
+        operands.add(callee);
+        for (Expr argument : call.arguments) {
+            String temp = "t" + temp_count++;
+            line(temp + " = " + emit(argument) + ";");
+            operands.add(temp);
+        }
+
+        line("if (" + callee + " == F" + id + ".INSTANCE) {");
+        for (int i = 0; i < call.arguments.size(); i++)
+            line("    " + param_locals[i] + " = " + operands.get(i + 1) + ";");
+        line("    continue tail;");
+        line("}");
+
+        operands.add(String.valueOf(call.paren.line));
+        line("if (true) return c" + id + "(" + String.join(", ", operands) + ");");
+        tail_loop = true;
+    }
+
+    // c<id>: callee and arguments are already evaluated, go direct if it's still the same function
+    private void emit_call_stub(Function function) {
+        int id = function_ids.get(function);
+        List<String> params = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < function.params.size(); i++) {
+            params.add("Object a" + i);
+            arguments.add("a" + i);
+        }
+
+        members.append("    static Object c" + id + "(Object callee");
+        for (String param : params)
+            members.append(", ").append(param);
+        members.append(", int line) {\n");
+        members.append("        if (callee == F" + id + ".INSTANCE)\n");
+        members.append("            return f" + id + "(" + String.join(", ", arguments) + ");\n");
+        members.append("        return AotRuntime.call(callee, new Object[] { " + String.join(", ", arguments)
+                + " }, line);\n");
+        members.append("    }\n\n");
+    }
+
+    private void define(Token name, int slot, String value) {
+        if (slot < 0) {
+            line(global(name.token) + " = " + value + ";");
+            return;
+        }
+
+        String local = "l" + local_count++;
+        scopes.get(scopes.size() - 1)[slot] = local;
+        line("Object " + local + " = " + value + ";");
+    }
+
+    private String global(String name) {
+        return global_fields.computeIfAbsent(name, e -> "g" + global_fields.size());
+    }
+
+    private String local(int depth, int slot) {
+        return scopes.get(scopes.size() - 1 - depth)[slot];
+    }
+
+    private static String java_literal(Object value) {
+        if (value instanceof Double) {
+            double number = (double) value;
+            if (Double.isFinite(number))
+                return "Double.valueOf(" + number + "d)";
+            return "Double.valueOf(Double.longBitsToDouble(" + Double.doubleToRawLongBits(number) + "L))";
+        }
+
+        if (value instanceof Character)
+            return "Character.valueOf((char) " + (int) (char) value + ")";
+
+        String text = value.toString();
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"' || ch == '\\')
+                literal.append('\\').append(ch);
+            else if (ch < 0x20)
+                literal.append(String.format("\\%03o", (int) ch));
+            else if (ch >= 0x7f)
+                literal.append(String.format("\\u%04x", (int) ch));
+            else
+                literal.append(ch);
+        }
+        return literal.append('"').toString();
+    }
+
+    // where the running com.ghulam classes come from, a directory or a jar
+    private static Path runtime_location() throws IOException {
+        try {
+            return Paths.get(AotCompiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private static void copy_runtime(Path runtime, JarOutputStream jar) throws IOException {
+        if (Files.isDirectory(runtime)) {
+            Path package_dir = runtime.resolve("com").resolve("ghulam");
+            for (Path file : list_files(package_dir))
+                add_entry(jar, runtime.relativize(file).toString().replace('\\', '/'), Files.newInputStream(file));
+            return;
+        }
+
+        try (JarFile source = new JarFile(runtime.toFile())) {
+            for (JarEntry entry : source.stream().collect(Collectors.toList())) {
+                if (entry.getName().startsWith("com/ghulam/") && entry.getName().endsWith(".class"))
+                    add_entry(jar, entry.getName(), source.getInputStream(entry));
+            }
+        }
+    }
+
+    private static List<Path> list_files(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(e -> e.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static void add_entry(JarOutputStream jar, String name, InputStream input) throws IOException {
+        try (InputStream in = input) {
+            jar.putNextEntry(new JarEntry(name));
+            OutputStream out = jar;
+            in.transferTo(out);
+            jar.closeEntry();
+        }
+    }
+}
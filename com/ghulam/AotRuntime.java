@@ -0,0 +1,184 @@
+package com.ghulam;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Support code for programs built by AotCompiler. Operands are evaluated
+ * by the generated code before they get here, so failures (bad casts,
+ * undefined names) happen in the same order as in the Interpreter.
+ */
+public final class AotRuntime {
+    private AotRuntime() {
+    }
+
+    public static final Object UNDEFINED = new Object();
+
+    // yaad_rakh_bhai hits and misses, reported when the jar runs with --memo-stats
+    static final Memo.Counters memo_counters = new Memo.Counters();
+    private static boolean memo_stats = false;
+
+    // saath_chalao_bhai loops running, no global is assigned while one does
+    private static int parallel_depth = 0;
+
+    // top-level lauta_bhai ends the program
+    public static final class Stop extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        public static final Stop STOP = new Stop();
+
+        private Stop() {
+            super(null, null, false, false);
+        }
+    }
+
+    // a compiled karna_bhai, invoke() forwards to its static method
+    public abstract static class Function implements BhaiCallable {
+        private final int arity;
+
+        protected Function(int arity) {
+            this.arity = arity;
+        }
+
+        @Override
+        public int arity() {
+            return arity;
+        }
+
+        @Override
+        public Object call(Interpreter Interpreter, List<Object> arguments) {
+            return invoke(arguments.toArray());
+        }
+
+        public abstract Object invoke(Object[] arguments);
+    }
+
+    public static Object get(Object value, String name, int line) {
+        if (value == UNDEFINED)
+            throw undefined(name, line);
+        return value;
+    }
+
+    // checks the old value of an assigned global, returns the new one
+    public static Object set(Object old_value, Object value, String name, int line) {
+        if (parallel_depth > 0) {
+            Token token = new Token(TokenType.IDENTIFIER_TOKEN, name, null, line);
+            throw new RuntimeError(token, " saath_chalao_bhai can't assign to the global " + name + ".");
+        }
+        if (old_value == UNDEFINED)
+            throw undefined(name, line);
+        return value;
+    }
+
+    public static Object call(Object callee, Object[] arguments, int line) {
+        Token paren = new Token(TokenType.RIGHT_PAREN_TOKEN, ")", null, line);
+        if (!(callee instanceof BhaiCallable))
+            throw new RuntimeError(paren, "Can only call functions");
+
+        BhaiCallable function = (BhaiCallable) callee;
+        if (function.arity() >= 0 && arguments.length != function.arity()) {
+            throw new RuntimeError(paren, "Expected " +
+                    function.arity() + " arguments but got " +
+                    arguments.length + ".");
+        }
+
+        if (function instanceof Function)
+            return ((Function) function).invoke(arguments);
+        return function.call(null, Arrays.asList(arguments));
+    }
+
+    // start and limit of a saath_chalao_bhai, checked like the Interpreter does
+    public static void parallel_enter(Object start, Object limit, int line) {
+        if (!(start instanceof Double) || !(limit instanceof Double)) {
+            Token keyword = new Token(TokenType.PARALLEL_TOKEN, "saath_chalao_bhai", null, line);
+            throw new RuntimeError(keyword, " saath_chalao_bhai needs numbers to count from and to.");
+        }
+        parallel_depth++;
+    }
+
+    public static void parallel_exit() {
+        parallel_depth--;
+    }
+
+    // expression statements, the value is not used
+    public static void discard(Object value) {
+    }
+
+    public static void print(Object value) {
+        System.out.print(Values.stringfy(value));
+    }
+
+    public static boolean truthy(Object value) {
+        return Values.is_truthy(value);
+    }
+
+    public static Object add(Object left, Object right) {
+        return Values.add(left, right);
+    }
+
+    public static Object sub(Object left, Object right) {
+        return (double) left - (double) right;
+    }
+
+    public static Object mul(Object left, Object right) {
+        return (double) left * (double) right;
+    }
+
+    public static Object div(Object left, Object right) {
+        return (double) left / (double) right;
+    }
+
+    public static Object eq(Object left, Object right) {
+        return Values.is_equal(left, right);
+    }
+
+    public static Object ne(Object left, Object right) {
+        return !Values.is_equal(left, right);
+    }
+
+    public static Object lt(Object left, Object right) {
+        return (double) left < (double) right;
+    }
+
+    public static Object le(Object left, Object right) {
+        return (double) left <= (double) right;
+    }
+
+    public static Object gt(Object left, Object right) {
+        return (double) left > (double) right;
+    }
+
+    public static Object ge(Object left, Object right) {
+        return (double) left >= (double) right;
+    }
+
+    public static Object not(Object right) {
+        return !Values.is_truthy(right);
+    }
+
+    public static Object neg(Object right) {
+        return -(double) right;
+    }
+
+    // the jar's own arguments, --memo-stats is the only one
+    public static void start(String[] args) {
+        memo_stats = Arrays.asList(args).contains("--memo-stats");
+    }
+
+    // end of run reports, like ExecutionContext.run_file
+    public static void finish() {
+        if (memo_stats)
+            memo_counters.report(System.err);
+    }
+
+    // same message and exit status as Runner.runtime_error
+    public static void runtime_error(RuntimeError error) {
+        System.err.println("runtime error: " + error.getMessage());
+        finish();
+        System.exit(1);
+    }
+
+    private static RuntimeError undefined(String name, int line) {
+        Token token = new Token(TokenType.IDENTIFIER_TOKEN, name, null, line);
+        return new RuntimeError(token, " undefined variable " + name + ".");
+    }
+}
@@ -0,0 +1,594 @@
+package com.ghulam;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.ghulam.Expr.Assign;
+import com.ghulam.Expr.Binary;
+import com.ghulam.Expr.Call;
+import com.ghulam.Expr.Grouping;
+import com.ghulam.Expr.Literal;
+import com.ghulam.Expr.Logical;
+import com.ghulam.Expr.Unary;
+import com.ghulam.Expr.Variable;
+import com.ghulam.Stmt.Block;
+import com.ghulam.Stmt.Expression;
+import com.ghulam.Stmt.Function;
+import com.ghulam.Stmt.If;
+import com.ghulam.Stmt.Parallel;
+import com.ghulam.Stmt.Print;
+import com.ghulam.Stmt.Return;
+import com.ghulam.Stmt.Var;
+import com.ghulam.Stmt.While;
+
+/*
+ * Parsed (and optimized) programs saved on disk, so running the same file
+ * again skips the Scanner and Parser. The Resolver still runs on what is
+ * loaded, it is cheap and fills in the runtime fields (slots, caches).
+ *
+ * An entry is named by the SHA-256 of the source and whether it was
+ * optimized:
+ *
+ *   magic, FORMAT_VERSION, sha-256, statements..., crc32 of all before it
+ *
+ * Counts, lines and string numbers are varints. Strings are written once
+ * and then referred to by number. An entry with
+ * another version, another hash or a bad checksum is a miss, and the
+ * program is parsed and written again. Bump FORMAT_VERSION whenever the
+ * AST, the Parser or the Optimizer changes what they produce.
+ */
+final class AstCache implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static final int MAGIC = 0x42484149; // "BHAI"
+    private static final int FORMAT_VERSION = 3;
+
+    // node tags
+    private static final int NONE = 0;
+    private static final int BLOCK = 1, EXPRESSION = 2, PRINT = 3, VAR = 4, IF = 5, WHILE = 6, FUNCTION = 7,
+            RETURN = 8, PARALLEL = 9;
+    private static final int GROUPING = 16, LITERAL = 17, VARIABLE = 18, ASSIGN = 19, LOGICAL = 20, UNARY = 21,
+            BINARY = 22, CALL = 23;
+
+    // literal tags
+    private static final int NULL = 0, TRUE = 1, FALSE = 2, NUMBER = 3, STRING = 4, CHAR = 5;
+
+    private final Path dir;
+
+    // writing state
+    private DataOutputStream output;
+    private Map<String, Integer> string_ids;
+
+    // reading state
+    private DataInputStream input;
+    private List<String> strings;
+
+    AstCache(Path dir) {
+        this.dir = dir;
+    }
+
+    // ~/.cache/bhai, or $XDG_CACHE_HOME/bhai
+    static Path default_dir() {
+        String xdg = System.getenv("XDG_CACHE_HOME");
+        if (xdg != null && !xdg.isEmpty())
+            return Path.of(xdg, "bhai");
+        return Path.of(System.getProperty("user.home"), ".cache", "bhai");
+    }
+
+    static byte[] hash(ByteBuffer source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // every JDK has SHA-256
+        }
+    }
+
+    // the cached program for this source, null if there is no usable entry
+    List<Stmt> load(byte[] hash, boolean optimized) {
+        Path file = entry(hash, optimized);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length < 4 || checksum(bytes, bytes.length - 4) != ByteBuffer.wrap(bytes, bytes.length - 4, 4)
+                    .getInt())
+                return null;
+
+            input = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+            strings = new ArrayList<>();
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+                return null;
+            byte[] stored = new byte[hash.length];
+            input.readFully(stored);
+            if (!MessageDigest.isEqual(stored, hash))
+                return null;
+
+            return read_stmts();
+        } catch (IOException | RuntimeException ex) {
+            // unreadable or cut short, parse again and overwrite it
+            return null;
+        } finally {
+            input = null;
+            strings = null;
+        }
+    }
+
+    // best effort, a program that can't be cached still runs
+    void store(byte[] hash, boolean optimized, List<Stmt> stmts) {
+        Path temp = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            output = new DataOutputStream(bytes);
+            string_ids = new HashMap<>();
+
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.write(hash);
+            write_stmts(stmts);
+            output.flush();
+            byte[] body = bytes.toByteArray();
+            output.writeInt(checksum(body, body.length));
+
+            // write beside the entry and rename, so a reader never sees half a file
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, "entry", ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, entry(hash, optimized), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            try {
+                if (temp != null)
+                    Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        } finally {
+            output = null;
+            string_ids = null;
+        }
+    }
+
+    /**********************************
+     * writing
+     */
+
+    @Override
+    public Void visitBlockStmt(Block stmt) {
+        tag(BLOCK);
+        write_stmts(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Expression stmt) {
+        tag(EXPRESSION);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Print stmt) {
+        tag(PRINT);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Var stmt) {
+        tag(VAR);
+        write(stmt.name);
+        write(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(If stmt) {
+        tag(IF);
+        write(stmt.condition);
+        write(stmt.then_branch);
+        write(stmt.else_branch);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(While stmt) {
+        tag(WHILE);
+        write(stmt.condition);
+        write(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitParallelStmt(Parallel stmt) {
+        tag(PARALLEL);
+        write(stmt.keyword);
+        write(stmt.counter);
+        write(stmt.condition);
+        write(stmt.increment);
+        write(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Function stmt) {
+        tag(FUNCTION);
+        write(stmt.name);
+        write_int(stmt.params.size());
+        for (Token param : stmt.params)
+            write(param);
+        write_stmts(stmt.body);
+        write_bool(stmt.pure);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Return stmt) {
+        tag(RETURN);
+        write(stmt.keyword);
+        write(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Grouping expr) {
+        tag(GROUPING);
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        tag(LITERAL);
+        write_value(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Variable expr) {
+        tag(VARIABLE);
+        write(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Assign expr) {
+        tag(ASSIGN);
+        write(expr.name);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Logical expr) {
+        tag(LOGICAL);
+        write(expr.left);
+        write(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Unary expr) {
+        tag(UNARY);
+        write(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Binary expr) {
+        tag(BINARY);
+        write(expr.left);
+        write(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Call expr) {
+        tag(CALL);
+        write(expr.callee);
+        write(expr.paren);
+        write_int(expr.arguments.size());
+        for (Expr argument : expr.arguments)
+            write(argument);
+        return null;
+    }
+
+    private void write_stmts(List<Stmt> stmts) {
+        write_int(stmts.size());
+        for (Stmt stmt : stmts)
+            write(stmt);
+    }
+
+    private void write(Stmt stmt) {
+        if (stmt == null) {
+            tag(NONE);
+            return;
+        }
+        stmt.accept(this);
+        write_int(stmt.line);
+    }
+
+    private void write(Expr expr) {
+        if (expr == null)
+            tag(NONE);
+        else
+            expr.accept(this);
+    }
+
+    // tokens in the tree are names, operators and keywords: no literal to keep
+    private void write(Token token) {
+        tag(token.type.ordinal());
+        write_string(token.token);
+        write_int(token.line);
+    }
+
+    private void write_value(Object value) {
+        if (value == null) {
+            tag(NULL);
+        } else if (value.equals(true)) {
+            tag(TRUE);
+        } else if (value.equals(false)) {
+            tag(FALSE);
+        } else if (value instanceof Double) {
+            tag(NUMBER);
+            try {
+                output.writeDouble((double) value);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        } else if (value instanceof Character) {
+            tag(CHAR);
+            write_int((char) value);
+        } else if (value instanceof CharSequence) {
+            tag(STRING);
+            write_string(value.toString());
+        } else {
+            throw new IllegalArgumentException("can't cache a literal of " + value.getClass());
+        }
+    }
+
+    // first time: -1 and the text, after that: its number
+    private void write_string(String value) {
+        Integer id = string_ids.get(value);
+        if (id != null) {
+            write_int(id);
+            return;
+        }
+
+        string_ids.put(value, string_ids.size());
+        write_int(-1);
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        write_int(utf8.length);
+        try {
+            output.write(utf8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void tag(int tag) {
+        try {
+            output.writeByte(tag);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // zigzag varint: small numbers (and -1) take one byte
+    private void write_int(int value) {
+        int bits = (value << 1) ^ (value >> 31);
+        try {
+            while ((bits & ~0x7f) != 0) {
+                output.writeByte((bits & 0x7f) | 0x80);
+                bits >>>= 7;
+            }
+            output.writeByte(bits);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void write_bool(boolean value) {
+        tag(value ? 1 : 0);
+    }
+
+    /**********************************
+     * reading, mirrors the writing above
+     */
+
+    private List<Stmt> read_stmts() throws IOException {
+        int count = read_int();
+        List<Stmt> stmts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            stmts.add(read_stmt());
+        return stmts;
+    }
+
+    private Stmt read_stmt() throws IOException {
+        Stmt stmt = read_stmt_node();
+        if (stmt != null)
+            stmt.line = read_int();
+        return stmt;
+    }
+
+    private Stmt read_stmt_node() throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+            case NONE:
+                return null;
+            case BLOCK:
+                return new Block(read_stmts());
+            case EXPRESSION:
+                return new Expression(read_expr());
+            case PRINT:
+                return new Print(read_expr());
+            case VAR: {
+                Token name = read_token();
+                return new Var(name, read_expr());
+            }
+            case IF: {
+                Expr condition = read_expr();
+                Stmt then_branch = read_stmt();
+                return new If(condition, then_branch, read_stmt());
+            }
+            case WHILE: {
+                Expr condition = read_expr();
+                return new While(condition, read_stmt());
+            }
+            case PARALLEL: {
+                Token keyword = read_token();
+                Var counter = (Var) read_stmt();
+                Expr condition = read_expr();
+                Expr increment = read_expr();
+                return new Parallel(keyword, counter, condition, increment, read_stmt());
+            }
+            case FUNCTION: {
+                Token name = read_token();
+                int count = read_int();
+                List<Token> params = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    params.add(read_token());
+                Function function = new Function(name, params, read_stmts());
+                function.pure = input.readBoolean();
+                return function;
+            }
+            case RETURN: {
+                Token keyword = read_token();
+                return new Return(keyword, read_expr());
+            }
+
+            default:
+                throw new IOException("bad statement tag " + tag);
+        }
+    }
+
+    private Expr read_expr() throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+            case NONE:
+                return null;
+            case GROUPING:
+                return new Grouping(read_expr());
+            case LITERAL:
+                return new Literal(read_value());
+            case VARIABLE:
+                return new Variable(read_token());
+            case ASSIGN: {
+                Token name = read_token();
+                return new Assign(name, read_expr());
+            }
+            case LOGICAL: {
+                Expr left = read_expr();
+                Token operator = read_token();
+                return new Logical(left, operator, read_expr());
+            }
+            case UNARY: {
+                Token operator = read_token();
+                return new Unary(operator, read_expr());
+            }
+            case BINARY: {
+                Expr left = read_expr();
+                Token operator = read_token();
+                return new Binary(left, operator, read_expr());
+            }
+            case CALL: {
+                Expr callee = read_expr();
+                Token paren = read_token();
+                int count = read_int();
+                List<Expr> arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    arguments.add(read_expr());
+                return new Call(callee, paren, arguments);
+            }
+
+            default:
+                throw new IOException("bad expression tag " + tag);
+        }
+    }
+
+    private Token read_token() throws IOException {
+        TokenType type = TokenType.values()[input.readUnsignedByte()];
+        String lexeme = read_string();
+        return new Token(type, lexeme, null, read_int());
+    }
+
+    private Object read_value() throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            case NUMBER:
+                return input.readDouble();
+            case CHAR:
+                return (char) read_int();
+            case STRING:
+                return read_string();
+
+            default:
+                throw new IOException("bad literal tag " + tag);
+        }
+    }
+
+    private String read_string() throws IOException {
+        int id = read_int();
+        if (id >= 0)
+            return strings.get(id);
+
+        byte[] utf8 = new byte[read_int()];
+        input.readFully(utf8);
+        String value = new String(utf8, StandardCharsets.UTF_8);
+        strings.add(value);
+        return value;
+    }
+
+    private int read_int() throws IOException {
+        int bits = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input.readUnsignedByte();
+            bits |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return (bits >>> 1) ^ -(bits & 1);
+        }
+        throw new IOException("bad number");
+    }
+
+    // helper
+    private Path entry(byte[] hash, boolean optimized) {
+        return dir.resolve(hex(hash) + (optimized ? ".ast" : ".noopt.ast"));
+    }
+
+    static String hex(byte[] hash) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : hash)
+            name.append(String.format("%02x", b));
+        return name.toString();
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
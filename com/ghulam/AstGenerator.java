@@ -15,32 +15,34 @@ public class AstGenerator {
         var expr = List.of(
                 "Grouping : Expr expression",
                 "Literal : Object value",
-                "Variable : Token name",
-                "Assign : Token name, Expr value",
+                "Variable : Token name | int depth = -1, int slot = -1, Environment.Global global",
+                "Assign : Token name, Expr value | int depth = -1, int slot = -1, Environment.Global global",
                 "Logical : Expr left, Token operator, Expr right",
                 "Unary : Token operator, Expr right",
-                "Binary : Expr left, Token operator, Expr right",
-                "Call : Expr callee, Token paren, List<Expr> arguments");
+                "Binary : Expr left, Token operator, Expr right | int state",
+                "Call : Expr callee, Token paren, List<Expr> arguments | CallCache cache");
 
         var stmt = List.of(
-                "Block : List<Stmt> statements",
+                "Block : List<Stmt> statements | int slot_count",
                 "Expression : Expr expression",
                 "Print : Expr expression",
-                "Var : Token name, Expr initializer",
+                "Var : Token name, Expr initializer | int slot = -1",
                 "If : Expr condition, Stmt then_branch, Stmt else_branch",
                 "While : Expr condition, Stmt body",
-                "Function : Token name, List<Token> params, List<Stmt> body",
-                "Return : Token keyword, Expr value");
+                "Parallel : Token keyword, Var counter, Expr condition, Expr increment, Stmt body | int slot_count",
+                "Function : Token name, List<Token> params, List<Stmt> body | int slot = -1, int slot_count, boolean pure",
+                "Return : Token keyword, Expr value | boolean tail");
 
-        define_ast(output_dir, "Expr", expr);
-        define_ast(output_dir, "Stmt", stmt);
+        define_ast(output_dir, "Expr", expr, List.of());
+        // where a statement starts, set by the Parser (for --profile)
+        define_ast(output_dir, "Stmt", stmt, List.of("int line"));
 
         System.out.println("<< Expr.java >> file is generated.");
         System.out.println("<< Stmt.java >> file is generated.");
     }
 
-    private static void define_ast(String output_dir, String parent_class, List<String> types)
-            throws Exception {
+    private static void define_ast(String output_dir, String parent_class, List<String> types,
+            List<String> base_fields) throws Exception {
         String path = output_dir + "/" + parent_class + ".java";
         PrintWriter writer = new PrintWriter(path, "UTF-8");
 
@@ -52,10 +54,20 @@ public class AstGenerator {
         writer.println("public abstract class " + parent_class + " {");
         define_visitor(writer, parent_class, types);
 
+        // fields every node has, also filled in after construction
+        for (var field : base_fields)
+            writer.println("    " + field + ";");
+        if (!base_fields.isEmpty())
+            writer.println();
+
         for (var type : types) {
             String class_name = type.split(":")[0].trim();
-            String field = type.split(":")[1].trim();
-            define_type(writer, parent_class, class_name, field);
+            String fields = type.split(":")[1];
+            String field = fields.split("\\|")[0].trim();
+
+            // fields after '|' are not part of the constructor, later passes fill them in
+            String extra = fields.contains("|") ? fields.split("\\|")[1].trim() : null;
+            define_type(writer, parent_class, class_name, field, extra);
         }
 
         writer.println("    abstract <E> E accept(Visitor<E> visitor);");
@@ -74,7 +86,8 @@ public class AstGenerator {
         writer.println("    }\n");
     }
 
-    private static void define_type(PrintWriter writer, String parent_class, String class_name, String field_list) {
+    private static void define_type(PrintWriter writer, String parent_class, String class_name, String field_list,
+            String extra_list) {
         writer.println("    public static class " + class_name + " extends " + parent_class + " {");
 
         // fields
@@ -82,6 +95,11 @@ public class AstGenerator {
         for (var field : fields) {
             writer.println("        final " + field + ";");
         }
+        if (extra_list != null) {
+            for (var field : extra_list.split(", ")) {
+                writer.println("        " + field + ";");
+            }
+        }
         writer.println();
 
         // constructor
@@ -0,0 +1,155 @@
+package com.ghulam;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * --batch=<dir>: every .bhai file in a directory, each in an
+ * ExecutionContext of its own, several at the same time. A file's output
+ * and errors are kept apart from the others and printed together, in file
+ * name order, as soon as it and the files before it are done. A file that
+ * fails doesn't stop the rest.
+ *
+ * jobs > 0 runs that many at a time on a thread pool; 0 gives every file a
+ * virtual thread when the JVM has them (21+), else one thread per core.
+ */
+final class BatchRunner {
+    private static final class Result {
+        final Path file;
+        final boolean ok;
+        final long time;
+        final String output;
+        final String errors;
+
+        Result(Path file, boolean ok, long time, String output, String errors) {
+            this.file = file;
+            this.ok = ok;
+            this.time = time;
+            this.output = output;
+            this.errors = errors;
+        }
+    }
+
+    private final ExecutionContext settings;
+    private final int jobs;
+    private String threads; // what executor() made, for the summary line
+
+    // every file gets settings.copy(), so the engine, optimizer and cache are the same as the command line's
+    BatchRunner(ExecutionContext settings, int jobs) {
+        this.settings = settings;
+        this.jobs = jobs;
+    }
+
+    // true if every file ran without an error
+    boolean run(Path dir, PrintStream report) throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(e -> e.getFileName().toString().endsWith(".bhai") && Files.isRegularFile(e))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        long start = System.nanoTime();
+        int failed = 0;
+        ExecutorService executor = executor();
+        try {
+            List<Future<Result>> results = new ArrayList<>();
+            for (Path file : files)
+                results.add(executor.submit(() -> run(file)));
+
+            for (int i = 0; i < files.size(); i++) {
+                Result result = result(files.get(i), results.get(i));
+                print(result, report);
+                if (!result.ok)
+                    failed++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report.printf("batch: %d files, %d failed, %.1f ms on %s%n", files.size(), failed,
+                (System.nanoTime() - start) / 1e6, threads);
+        report.flush();
+        return failed == 0;
+    }
+
+    // one file, start to end, on the calling thread
+    private Result run(Path file) {
+        StringBuilder output = new StringBuilder();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream err = new PrintStream(errors, true, Charset.defaultCharset());
+        ExecutionContext context = settings.copy(OutputSink.to(output), err);
+
+        long start = System.nanoTime();
+        boolean ok;
+        try {
+            ok = context.run_file(file);
+        } catch (IOException | RuntimeException | StackOverflowError ex) {
+            err.println("ERROR: " + ex);
+            ok = false;
+        }
+        long time = System.nanoTime() - start;
+
+        err.flush();
+        return new Result(file, ok, time, output.toString(), errors.toString(Charset.defaultCharset()));
+    }
+
+    // helper
+    private static Result result(Path file, Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            return new Result(file, false, 0, "", "ERROR: " + ex.getCause() + System.lineSeparator());
+        }
+    }
+
+    private static void print(Result result, PrintStream report) {
+        report.printf("== %s: %s, %.1f ms%n", result.file.getFileName(), result.ok ? "ok" : "failed",
+                result.time / 1e6);
+        report.print(result.output);
+        if (!result.output.isEmpty() && !result.output.endsWith("\n"))
+            report.println();
+        report.print(result.errors);
+    }
+
+    private static String count(int threads) {
+        return threads == 1 ? "1 thread" : threads + " threads";
+    }
+
+    private ExecutorService executor() {
+        if (jobs > 0) {
+            threads = count(jobs);
+            return Executors.newFixedThreadPool(jobs);
+        }
+
+        ExecutorService executor = virtual_threads();
+        if (executor != null) {
+            threads = "virtual threads";
+            return executor;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        threads = count(cores);
+        return Executors.newFixedThreadPool(cores);
+    }
+
+    // a virtual thread per task, null before Java 21 (this still builds for 17)
+    static ExecutorService virtual_threads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
@@ -1,9 +1,36 @@
 package com.ghulam;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/*
+ * call0..call4 are what the Interpreter uses for calls with up to four
+ * arguments, so the values don't need a list. They default to call();
+ * BhaiFunction writes them straight into its frame instead.
+ */
 public interface BhaiCallable {
     int arity();
 
     Object call(Interpreter Interpreter, List<Object> arguments);
+
+    default Object call0(Interpreter Interpreter) {
+        return call(Interpreter, Collections.emptyList());
+    }
+
+    default Object call1(Interpreter Interpreter, Object a0) {
+        return call(Interpreter, Collections.singletonList(a0));
+    }
+
+    default Object call2(Interpreter Interpreter, Object a0, Object a1) {
+        return call(Interpreter, Arrays.asList(a0, a1));
+    }
+
+    default Object call3(Interpreter Interpreter, Object a0, Object a1, Object a2) {
+        return call(Interpreter, Arrays.asList(a0, a1, a2));
+    }
+
+    default Object call4(Interpreter Interpreter, Object a0, Object a1, Object a2, Object a3) {
+        return call(Interpreter, Arrays.asList(a0, a1, a2, a3));
+    }
 }
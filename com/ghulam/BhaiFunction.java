@@ -16,18 +16,90 @@ public class BhaiFunction implements BhaiCallable {
 
     @Override
     public Object call(Interpreter Interpreter, List<Object> arguments) {
-        Environment environment = new Environment(Interpreter.globals);
+        Environment environment = frame(Interpreter, declaration);
         for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).token, arguments.get(i));
+            environment.define_at(i, arguments.get(i));
         }
+        return run(Interpreter, declaration, environment);
+    }
 
-        try {
-            Interpreter.execute_block(declaration.body, environment);
-        } catch (BhaiReturn returnValue) {
-            return returnValue.value;
-        }
+    // arguments go straight into the frame
+    @Override
+    public Object call0(Interpreter Interpreter) {
+        return run(Interpreter, declaration, frame(Interpreter, declaration));
+    }
+
+    @Override
+    public Object call1(Interpreter Interpreter, Object a0) {
+        Environment environment = frame(Interpreter, declaration);
+        environment.define_at(0, a0);
+        return run(Interpreter, declaration, environment);
+    }
+
+    @Override
+    public Object call2(Interpreter Interpreter, Object a0, Object a1) {
+        Environment environment = frame(Interpreter, declaration);
+        environment.define_at(0, a0);
+        environment.define_at(1, a1);
+        return run(Interpreter, declaration, environment);
+    }
+
+    @Override
+    public Object call3(Interpreter Interpreter, Object a0, Object a1, Object a2) {
+        Environment environment = frame(Interpreter, declaration);
+        environment.define_at(0, a0);
+        environment.define_at(1, a1);
+        environment.define_at(2, a2);
+        return run(Interpreter, declaration, environment);
+    }
+
+    @Override
+    public Object call4(Interpreter Interpreter, Object a0, Object a1, Object a2, Object a3) {
+        Environment environment = frame(Interpreter, declaration);
+        environment.define_at(0, a0);
+        environment.define_at(1, a1);
+        environment.define_at(2, a2);
+        environment.define_at(3, a3);
+        return run(Interpreter, declaration, environment);
+    }
 
-        return null;
+    // helper
+    private static Environment frame(Interpreter Interpreter, Stmt.Function declaration) {
+        return Interpreter.acquire_frame(Interpreter.globals, declaration.slot_count);
     }
 
+    private static Object run(Interpreter Interpreter, Stmt.Function declaration, Environment environment) {
+        // tail calls come back here and run in place of this call
+        while (true) {
+            if (Interpreter.profiler != null)
+                Interpreter.profiler.enter(declaration);
+            try {
+                Interpreter.execute_block(declaration.body, environment);
+            } finally {
+                Interpreter.release_frame(environment);
+            }
+            if (Interpreter.profiler != null)
+                Interpreter.profiler.exit();
+
+            if (!Interpreter.returning)
+                return null;
+            Interpreter.returning = false;
+
+            if (Interpreter.tail_function == null) {
+                Object value = Interpreter.return_value;
+                Interpreter.return_value = null;
+                return value;
+            }
+
+            declaration = Interpreter.tail_function.declaration;
+            List<Object> arguments = Interpreter.tail_arguments;
+            Interpreter.tail_function = null;
+            Interpreter.tail_arguments = null;
+
+            environment = frame(Interpreter, declaration);
+            for (int i = 0; i < declaration.params.size(); i++) {
+                environment.define_at(i, arguments.get(i));
+            }
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package com.ghulam;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+/*
+ * javax.script engine ("bhai"), found by ScriptEngineManager through
+ * META-INF/services. compile() scans, parses, optimizes and resolves once;
+ * every eval() of the CompiledScript runs that tree on a new Interpreter
+ * in an ExecutionContext of its own, so evals don't see each other and can
+ * run on different threads at the same time.
+ *
+ * Bindings are the program's globals: GLOBAL_SCOPE and then ENGINE_SCOPE
+ * are defined before it runs (numbers become doubles), and globals it
+ * defined or changed are put back into ENGINE_SCOPE afterwards. bol_bhai
+ * writes to the context's Writer, a top-level lauta_bhai is what eval()
+ * gives back, and errors are ScriptExceptions with the line.
+ *
+ * Always the tree engine: the VM numbers its globals while compiling.
+ */
+public final class BhaiScriptEngine extends AbstractScriptEngine implements Compilable {
+    private static final PrintStream NOWHERE = new PrintStream(OutputStream.nullOutputStream());
+
+    private final ScriptEngineFactory factory;
+
+    BhaiScriptEngine(ScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    public BhaiScriptEngine() {
+        this(new BhaiScriptEngineFactory());
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(new Scanner(script), context).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return compile(new Scanner(reader), context).eval(context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return compile(new Scanner(script), context);
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(new Scanner(script), context);
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    private CompiledScript compile(Scanner scanner, ScriptContext context) throws ScriptException {
+        ExecutionContext compiler = quiet(OutputSink.to(new StringBuilder()));
+        List<Stmt> parsed_out = compiler.parse(scanner);
+        if (parsed_out == null)
+            throw error(compiler, context);
+        return new Program(parsed_out);
+    }
+
+    /**********************************
+     * a compiled program
+     */
+
+    private final class Program extends CompiledScript {
+        private final List<Stmt> parsed_out;
+
+        Program(List<Stmt> parsed_out) {
+            this.parsed_out = parsed_out;
+        }
+
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException {
+            ExecutionContext runner = quiet(OutputSink.to(context.getWriter()));
+            Environment globals = runner.interpreter().globals;
+
+            // what went in, so only globals the program changed are put back
+            Map<String, Object> given = new HashMap<>();
+            bind(context.getBindings(ScriptContext.GLOBAL_SCOPE), globals, given);
+            bind(context.getBindings(ScriptContext.ENGINE_SCOPE), globals, given);
+
+            Object result;
+            try {
+                result = runner.interpret(parsed_out);
+            } catch (RuntimeException ex) {
+                // not a RuntimeError (e.g. a bad cast in a builtin): no token, the line is where it came out
+                throw error(ex, runner.interpreter().error_line, context);
+            }
+            if (runner.had_error())
+                throw error(runner, context);
+
+            Bindings engine_scope = context.getBindings(ScriptContext.ENGINE_SCOPE);
+            globals.each_global((name, value) -> {
+                if (value instanceof NativeFunction || (given.containsKey(name) && given.get(name) == value))
+                    return;
+                engine_scope.put(name, to_java(value));
+            });
+            return to_java(result);
+        }
+
+        @Override
+        public ScriptEngine getEngine() {
+            return BhaiScriptEngine.this;
+        }
+    }
+
+    // helper
+    private static void bind(Bindings bindings, Environment globals, Map<String, Object> given) {
+        if (bindings == null)
+            return;
+        for (var e : bindings.entrySet()) {
+            Object value = to_bhai(e.getValue());
+            globals.define(e.getKey(), value);
+            given.put(e.getKey(), value);
+        }
+    }
+
+    // bhai has only doubles
+    private static Object to_bhai(Object value) {
+        if (value instanceof Number && !(value instanceof Double))
+            return ((Number) value).doubleValue();
+        return value;
+    }
+
+    private static Object to_java(Object value) {
+        return BhaiString.flatten(value);
+    }
+
+    // errors are thrown, not printed
+    private static ExecutionContext quiet(OutputSink out) {
+        return new ExecutionContext(out, NOWHERE);
+    }
+
+    private static ScriptException error(ExecutionContext failed, ScriptContext context) {
+        return new ScriptException(failed.error_message(), file(context), failed.error_line());
+    }
+
+    private static ScriptException error(RuntimeException ex, int line, ScriptContext context) {
+        String message = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+        ScriptException error = new ScriptException(message, file(context), line);
+        error.initCause(ex);
+        return error;
+    }
+
+    private static String file(ScriptContext context) {
+        Object file = context.getAttribute(ScriptEngine.FILENAME);
+        return file == null ? null : file.toString();
+    }
+}
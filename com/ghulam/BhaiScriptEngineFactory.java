@@ -0,0 +1,98 @@
+package com.ghulam;
+
+import java.util.List;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+/*
+ * Listed in META-INF/services/javax.script.ScriptEngineFactory, so
+ * new ScriptEngineManager().getEngineByName("bhai") finds it.
+ */
+public final class BhaiScriptEngineFactory implements ScriptEngineFactory {
+    private static final String VERSION = "1.0";
+
+    @Override
+    public String getEngineName() {
+        return "bhai_lang";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return List.of("bhai");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("text/x-bhai", "application/x-bhai");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("bhai", "bhai_lang", "bhai-lang");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "bhai";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE:
+                return getEngineName();
+            case ScriptEngine.ENGINE_VERSION:
+                return getEngineVersion();
+            case ScriptEngine.NAME:
+                return getNames().get(0);
+            case ScriptEngine.LANGUAGE:
+                return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION:
+                return getLanguageVersion();
+            case "THREADING":
+                // every eval has its own Interpreter, only a CompiledScript's tree is shared
+                return "MULTITHREADED";
+
+            default:
+                return null;
+        }
+    }
+
+    // no methods in bhai, the object goes in as the first argument
+    @Override
+    public String getMethodCallSyntax(String object, String method, String... args) {
+        StringBuilder call = new StringBuilder(method).append('(').append(object);
+        for (String e : args)
+            call.append(", ").append(e);
+        return call.append(')').toString();
+    }
+
+    @Override
+    public String getOutputStatement(String text) {
+        return "bol_bhai \"" + text + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder program = new StringBuilder();
+        for (String e : statements)
+            program.append(e).append(";\n");
+        return program.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new BhaiScriptEngine(this);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ghulam;
+
+/*
+ * A string built by '+'. Appending to the newest string of a chain
+ * writes into the builder the chain shares, so s = s + "," + i in a loop
+ * doesn't copy s every time; an older string of the chain only ever
+ * looks at its own prefix of the builder, and copies it if it is
+ * appended to again.
+ *
+ * The Java String is only made (and kept) when the value is printed,
+ * compared or otherwise looked at.
+ */
+final class BhaiString implements CharSequence {
+    // shorter results of '+' stay plain Strings
+    static final int MIN_LENGTH = 64;
+
+    private final StringBuilder buffer;
+    private final int length;
+    private String flat;
+
+    private BhaiString(StringBuilder buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    // left + right, left being a String or a BhaiString
+    static CharSequence concat(CharSequence left, String right) {
+        if (left instanceof BhaiString)
+            return ((BhaiString) left).append(right);
+
+        int length = left.length() + right.length();
+        if (length < MIN_LENGTH)
+            return left.toString().concat(right);
+
+        StringBuilder buffer = new StringBuilder(Math.max(length * 2, MIN_LENGTH * 2));
+        buffer.append(left).append(right);
+        return new BhaiString(buffer, length);
+    }
+
+    // Strings for anything that might be a BhaiString
+    static Object flatten(Object value) {
+        if (value instanceof BhaiString)
+            return value.toString();
+        return value;
+    }
+
+    private BhaiString append(String text) {
+        synchronized (buffer) {
+            if (buffer.length() == length) {
+                buffer.append(text);
+                return new BhaiString(buffer, buffer.length());
+            }
+
+            // someone appended to this string already, start a new chain
+            StringBuilder copy = new StringBuilder((length + text.length()) * 2);
+            copy.append(buffer, 0, length).append(text);
+            return new BhaiString(copy, copy.length());
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String text = flat;
+        if (text == null) {
+            synchronized (buffer) {
+                text = buffer.substring(0, length);
+            }
+            flat = text;
+        }
+        return text;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof BhaiString && toString().equals(obj.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}
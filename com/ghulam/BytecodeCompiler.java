@@ -0,0 +1,430 @@
+package com.ghulam;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ghulam.Expr.Assign;
+import com.ghulam.Expr.Binary;
+import com.ghulam.Expr.Call;
+import com.ghulam.Expr.Grouping;
+import com.ghulam.Expr.Literal;
+import com.ghulam.Expr.Logical;
+import com.ghulam.Expr.Unary;
+import com.ghulam.Expr.Variable;
+import com.ghulam.Stmt.Block;
+import com.ghulam.Stmt.Expression;
+import com.ghulam.Stmt.Function;
+import com.ghulam.Stmt.If;
+import com.ghulam.Stmt.Parallel;
+import com.ghulam.Stmt.Print;
+import com.ghulam.Stmt.Return;
+import com.ghulam.Stmt.Var;
+import com.ghulam.Stmt.While;
+
+/*
+ * Lowers resolved Stmt/Expr trees into VM bytecode.
+ *
+ * Locals use the Resolver's (depth, slot) addresses: every scope of a
+ * function gets a base offset in the frame, so a local is just
+ * base + slot. Globals are numbered by the VM and accessed by index.
+ */
+public class BytecodeCompiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final VM vm;
+
+    private VmFunction function;
+    private Chunk chunk;
+    private List<Integer> scope_bases;
+    private int locals_top;
+    private int stack_depth;
+
+    public BytecodeCompiler(VM vm) {
+        this.vm = vm;
+    }
+
+    // top-level statements become a function of no arguments
+    public VmFunction compile(List<Stmt> stmts) {
+        begin_function(new VmFunction("script", 0), 0);
+        for (var e : stmts)
+            compile(e);
+        emit(OpCode.NIL, 1);
+        emit(OpCode.RETURN, -1);
+        return end_function();
+    }
+
+    @Override
+    public Void visitBlockStmt(Block stmt) {
+        if (stmt.slot_count == 0) {
+            for (Stmt e : stmt.statements)
+                compile(e);
+            return null;
+        }
+
+        scope_bases.add(locals_top);
+        locals_top += stmt.slot_count;
+        function.max_locals = Math.max(function.max_locals, locals_top);
+
+        for (Stmt e : stmt.statements)
+            compile(e);
+
+        locals_top -= stmt.slot_count;
+        scope_bases.remove(scope_bases.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Expression stmt) {
+        compile(stmt.expression);
+        emit(OpCode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Print stmt) {
+        compile(stmt.expression);
+        emit(OpCode.PRINT, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Var stmt) {
+        if (stmt.initializer != null)
+            compile(stmt.initializer);
+        else
+            emit(OpCode.NIL, 1);
+
+        define(stmt.name, stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(If stmt) {
+        compile(stmt.condition);
+        int else_jump = emit_jump(OpCode.POP_JUMP_IF_FALSE, -1);
+        compile(stmt.then_branch);
+
+        if (stmt.else_branch == null) {
+            patch_jump(else_jump);
+            return null;
+        }
+
+        int end_jump = emit_jump(OpCode.JUMP, 0);
+        patch_jump(else_jump);
+        compile(stmt.else_branch);
+        patch_jump(end_jump);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(While stmt) {
+        int loop_start = chunk.count;
+        compile(stmt.condition);
+        int exit_jump = emit_jump(OpCode.POP_JUMP_IF_FALSE, -1);
+        compile(stmt.body);
+        emit(OpCode.JUMP, 0);
+        chunk.emit(loop_start);
+        patch_jump(exit_jump);
+        return null;
+    }
+
+    // the VM has one thread: iterations run one after the other, as the chalao_bhai it reads like
+    @Override
+    public Void visitParallelStmt(Parallel stmt) {
+        // the VM runs the iterations in order, but counts like ParallelLoop:
+        // the counter is start + k * step, against a limit worked out once.
+        // start, limit and k sit in three slots after the loop's own
+        int base = locals_top;
+        int start = base + stmt.slot_count;
+        int limit = start + 1;
+        int k = start + 2;
+        Binary condition = (Binary) stmt.condition;
+        Object step = ((Literal) ((Binary) ((Assign) stmt.increment).value).right).value;
+
+        // the start is resolved outside the loop's scope, the limit in it
+        compile(stmt.counter.initializer);
+        scope_bases.add(base);
+        locals_top += stmt.slot_count + 3;
+        function.max_locals = Math.max(function.max_locals, locals_top);
+        emit(OpCode.SET_LOCAL, 0);
+        chunk.emit(base + stmt.counter.slot);
+        emit(OpCode.DEFINE_LOCAL, -1);
+        chunk.emit(start);
+        compile(condition.right);
+        emit(OpCode.DEFINE_LOCAL, -1);
+        chunk.emit(limit);
+        emit(OpCode.PARALLEL_ENTER, 0);
+        chunk.emit(start);
+        chunk.emit(chunk.add_constant(stmt.keyword));
+
+        int loop_start = chunk.count;
+        emit(OpCode.GET_LOCAL, 1);
+        chunk.emit(start);
+        emit(OpCode.GET_LOCAL, 1);
+        chunk.emit(k);
+        emit(OpCode.CONSTANT, 1);
+        chunk.emit(chunk.add_constant(step));
+        emit(OpCode.MULTIPLY, -1);
+        emit(OpCode.ADD, -1);
+        emit(OpCode.SET_LOCAL, 0);
+        chunk.emit(base + stmt.counter.slot);
+        emit(OpCode.GET_LOCAL, 1);
+        chunk.emit(limit);
+        emit(condition.operator.type == TokenType.LESS_EQUAL_TOKEN ? OpCode.LESS_EQUAL : OpCode.LESS, -1);
+        int exit_jump = emit_jump(OpCode.POP_JUMP_IF_FALSE, -1);
+        compile(stmt.body);
+        emit(OpCode.GET_LOCAL, 1);
+        chunk.emit(k);
+        emit(OpCode.CONSTANT, 1);
+        chunk.emit(chunk.add_constant(1.0));
+        emit(OpCode.ADD, -1);
+        emit(OpCode.DEFINE_LOCAL, -1);
+        chunk.emit(k);
+        emit(OpCode.JUMP, 0);
+        chunk.emit(loop_start);
+        patch_jump(exit_jump);
+        emit(OpCode.PARALLEL_EXIT, 0);
+
+        locals_top = base;
+        scope_bases.remove(scope_bases.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Function stmt) {
+        // compile the body with its own frame layout, then come back here
+        VmFunction enclosing = function;
+        List<Integer> enclosing_bases = scope_bases;
+        int enclosing_top = locals_top;
+        int enclosing_depth = stack_depth;
+
+        VmFunction target = new VmFunction(stmt.name.token, stmt.params.size());
+        if (stmt.pure)
+            target.memo = new Memo(stmt.name, vm.memo_counters);
+        begin_function(target, stmt.slot_count);
+        for (Stmt e : stmt.body)
+            compile(e);
+        emit(OpCode.NIL, 1);
+        emit(OpCode.RETURN, -1);
+        VmFunction compiled = end_function();
+
+        function = enclosing;
+        chunk = enclosing == null ? null : enclosing.chunk;
+        scope_bases = enclosing_bases;
+        locals_top = enclosing_top;
+        stack_depth = enclosing_depth;
+
+        emit(OpCode.CONSTANT, 1);
+        chunk.emit(chunk.add_constant(compiled));
+        define(stmt.name, stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Return stmt) {
+        if (stmt.tail)
+            compile_call((Call) stmt.value, OpCode.TAIL_CALL);
+        else if (stmt.value != null)
+            compile(stmt.value);
+        else
+            emit(OpCode.NIL, 1);
+        emit(OpCode.RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        if (expr.value == null) {
+            emit(OpCode.NIL, 1);
+        } else if (expr.value.equals(true)) {
+            emit(OpCode.TRUE, 1);
+        } else if (expr.value.equals(false)) {
+            emit(OpCode.FALSE, 1);
+        } else {
+            emit(OpCode.CONSTANT, 1);
+            chunk.emit(chunk.add_constant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Variable expr) {
+        if (expr.depth < 0) {
+            emit(OpCode.GET_GLOBAL, 1);
+            chunk.emit(vm.global_index(expr.name.token));
+            chunk.emit(chunk.add_constant(expr.name));
+        } else {
+            emit(OpCode.GET_LOCAL, 1);
+            chunk.emit(local(expr.depth, expr.slot));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Assign expr) {
+        compile(expr.value);
+
+        if (expr.depth < 0) {
+            emit(OpCode.SET_GLOBAL, 0);
+            chunk.emit(vm.global_index(expr.name.token));
+            chunk.emit(chunk.add_constant(expr.name));
+        } else {
+            emit(OpCode.SET_LOCAL, 0);
+            chunk.emit(local(expr.depth, expr.slot));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Logical expr) {
+        compile(expr.left);
+
+        int op = expr.operator.type == TokenType.OR_TOKEN ? OpCode.JUMP_IF_TRUE : OpCode.JUMP_IF_FALSE;
+        int end_jump = emit_jump(op, 0);
+        emit(OpCode.POP, -1);
+        compile(expr.right);
+        patch_jump(end_jump);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Unary expr) {
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case BANG_TOKEN:
+                emit(OpCode.NOT, 0);
+                break;
+            case MINUS_OP_TOKEN:
+                emit(OpCode.NEGATE, 0);
+                break;
+
+            default:
+                emit(OpCode.POP, -1);
+                emit(OpCode.NIL, 1);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Binary expr) {
+        compile(expr.left);
+        compile(expr.right);
+
+        switch (expr.operator.type) {
+            case MINUS_OP_TOKEN:
+                emit(OpCode.SUBTRACT, -1);
+                break;
+            case PLUS_OP_TOKEN:
+                emit(OpCode.ADD, -1);
+                break;
+            case STAR_OP_TOKEN:
+                emit(OpCode.MULTIPLY, -1);
+                break;
+            case SLASH_OP_TOKEN:
+                emit(OpCode.DIVIDE, -1);
+                break;
+            case EQUAL_EQUAL_TOKEN:
+                emit(OpCode.EQUAL, -1);
+                break;
+            case BANG_EQUAL_TOKEN:
+                emit(OpCode.NOT_EQUAL, -1);
+                break;
+            case LESS_TOKEN:
+                emit(OpCode.LESS, -1);
+                break;
+            case LESS_EQUAL_TOKEN:
+                emit(OpCode.LESS_EQUAL, -1);
+                break;
+            case GREATER_TOKEN:
+                emit(OpCode.GREATER, -1);
+                break;
+            case GREATER_EQUAL_TOKEN:
+                emit(OpCode.GREATER_EQUAL, -1);
+                break;
+
+            default:
+                emit(OpCode.POP, -1);
+                emit(OpCode.POP, -1);
+                emit(OpCode.NIL, 1);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Call expr) {
+        compile_call(expr, OpCode.CALL);
+        return null;
+    }
+
+    // helper
+    private void compile_call(Call expr, int op) {
+        compile(expr.callee);
+        for (Expr argument : expr.arguments)
+            compile(argument);
+
+        emit(op, -expr.arguments.size());
+        chunk.emit(expr.arguments.size());
+        chunk.emit(chunk.add_constant(expr.paren));
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+
+    private void begin_function(VmFunction function, int slot_count) {
+        this.function = function;
+        chunk = function.chunk;
+        scope_bases = new ArrayList<>();
+        scope_bases.add(0);
+        locals_top = slot_count;
+        stack_depth = 0;
+        function.max_locals = slot_count;
+    }
+
+    private VmFunction end_function() {
+        chunk.seal();
+        return function;
+    }
+
+    // emit an opcode and track how deep the operand stack can get
+    private void emit(int op, int stack_effect) {
+        chunk.emit(op);
+        stack_depth += stack_effect;
+        function.max_stack = Math.max(function.max_stack, stack_depth);
+    }
+
+    private int emit_jump(int op, int stack_effect) {
+        emit(op, stack_effect);
+        return chunk.emit(-1);
+    }
+
+    private void patch_jump(int operand) {
+        chunk.code[operand] = chunk.count;
+    }
+
+    // value on top of the stack goes into the declared name
+    private void define(Token name, int slot) {
+        if (slot < 0) {
+            emit(OpCode.DEFINE_GLOBAL, -1);
+            chunk.emit(vm.global_index(name.token));
+        } else {
+            emit(OpCode.DEFINE_LOCAL, -1);
+            chunk.emit(scope_bases.get(scope_bases.size() - 1) + slot);
+        }
+    }
+
+    private int local(int depth, int slot) {
+        return scope_bases.get(scope_bases.size() - 1 - depth) + slot;
+    }
+}
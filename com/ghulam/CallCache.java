@@ -0,0 +1,24 @@
+package com.ghulam;
+
+/*
+ * What an Expr.Call last called through a global: the function, already
+ * checked to be callable with this call's argument count, valid as long
+ * as the global hasn't been defined or assigned again.
+ *
+ * Immutable, a call site swaps in a new one instead of updating it.
+ */
+final class CallCache {
+    final Environment.Global global;
+    final int version;
+    final BhaiCallable function;
+
+    CallCache(Environment.Global global, BhaiCallable function) {
+        this.global = global;
+        this.version = global.version;
+        this.function = function;
+    }
+
+    boolean is_valid(Environment globals) {
+        return global.version == version && global.owner == globals;
+    }
+}
@@ -0,0 +1,34 @@
+package com.ghulam;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Compiled code of one function: instructions (see OpCode) and the
+ * constants they refer to.
+ */
+final class Chunk {
+    int[] code = new int[64];
+    int count = 0;
+    private final List<Object> constant_list = new ArrayList<>();
+    Object[] constants;
+
+    int emit(int value) {
+        if (count == code.length)
+            code = Arrays.copyOf(code, count * 2);
+        code[count++] = value;
+        return count - 1;
+    }
+
+    int add_constant(Object value) {
+        constant_list.add(value);
+        return constant_list.size() - 1;
+    }
+
+    // called once the compiler is done with this chunk
+    void seal() {
+        code = Arrays.copyOf(code, count);
+        constants = constant_list.toArray();
+    }
+}
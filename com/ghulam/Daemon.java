@@ -0,0 +1,270 @@
+package com.ghulam;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * --daemon: one warm JVM that runs scripts for DaemonClient (--client) over
+ * a Unix-domain socket, so a run pays neither JVM startup nor JIT warm-up.
+ *
+ *   request   MAGIC, flag count, flags (UTF), then
+ *             FILE, path (UTF)  or  SOURCE, length, bytes
+ *   response  STDOUT or STDERR, length, bytes   as the program writes them
+ *             EXIT, exit code                   once, at the end
+ *
+ * The flags are --engine=... and --no-optimize, on top of the ones the
+ * daemon was started with. Every request runs on a thread of its own
+ * (virtual when the JVM has them) in an ExecutionContext of its own.
+ * Parsed programs are kept in an LRU map keyed by the SHA-256 of the
+ * source, so a changed file is just a new entry.
+ *
+ * Whoever can connect can run code as the daemon's user, so the socket
+ * is only for its owner.
+ */
+final class Daemon {
+    static final int MAGIC = 0x42484944; // "BHID"
+    static final int FILE = 1, SOURCE = 2;
+    static final int EXIT = 0, STDOUT = 1, STDERR = 2;
+    static final int DEFAULT_PROGRAMS = 128;
+
+    private static final int FRAME_SIZE = 8 * 1024;
+
+    private final ExecutionContext settings;
+    private final Path socket;
+    private final Map<String, List<Stmt>> programs; // guarded by itself
+
+    Daemon(ExecutionContext settings, Path socket, int max_programs) {
+        this.settings = settings;
+        this.socket = socket;
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Stmt>> eldest) {
+                return size() > max_programs;
+            }
+        };
+    }
+
+    // $XDG_RUNTIME_DIR/bhai.sock, or a directory of the user's own in /tmp
+    static Path default_socket() {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        if (runtime != null && !runtime.isEmpty())
+            return Path.of(runtime, "bhai.sock");
+        return Path.of(System.getProperty("java.io.tmpdir"), "bhai-" + System.getProperty("user.name"),
+                "daemon.sock");
+    }
+
+    // never returns, the daemon runs until it is killed
+    void serve() throws IOException {
+        ServerSocketChannel server = bind();
+        ExecutorService executor = BatchRunner.virtual_threads();
+        if (executor == null)
+            executor = Executors.newCachedThreadPool();
+
+        System.err.println("bhai daemon on " + socket);
+        while (true) {
+            SocketChannel client = server.accept();
+            executor.submit(() -> handle(client));
+        }
+    }
+
+    private ServerSocketChannel bind() throws IOException {
+        if (Files.exists(socket)) {
+            if (listening(socket))
+                throw new IOException("another daemon is listening there");
+            Files.delete(socket); // left behind by one that was killed
+        }
+
+        Path dir = socket.toAbsolutePath().getParent();
+        if (!Files.isDirectory(dir))
+            Files.createDirectories(dir,
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException ignored) {
+            }
+        }));
+        return server;
+    }
+
+    private static boolean listening(Path socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**********************************
+     * one request
+     */
+
+    private void handle(SocketChannel channel) {
+        long start = System.nanoTime();
+        String name = "?";
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            if (in.readInt() != MAGIC)
+                return;
+
+            List<String> flags = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--)
+                flags.add(in.readUTF());
+
+            ByteBuffer source = null;
+            int kind = in.readByte();
+            if (kind == FILE) {
+                name = in.readUTF();
+            } else if (kind == SOURCE) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                source = ByteBuffer.wrap(bytes);
+                name = "<source>";
+            } else {
+                return;
+            }
+
+            Frames frames = new Frames(new DataOutputStream(Channels.newOutputStream(channel)));
+            int code = run(name, source, flags, frames);
+            frames.exit(code);
+            System.err.printf("%s: exit %d, %.1f ms%n", name, code, (System.nanoTime() - start) / 1e6);
+        } catch (EOFException ex) {
+            // a probe from listening(), or a client that went away
+        } catch (IOException ex) {
+            System.err.println(name + ": " + ex.getMessage());
+        }
+    }
+
+    // the exit code, like the command line's
+    private int run(String name, ByteBuffer source, List<String> flags, Frames frames) {
+        PrintStream err = new PrintStream(new BufferedOutputStream(frames.stream(STDERR), FRAME_SIZE), true,
+                Charset.defaultCharset());
+        ExecutionContext context = settings.copy(frames.sink(), err);
+        try {
+            for (String e : flags) {
+                if (e.startsWith("--engine="))
+                    context.use_engine(e.substring("--engine=".length()));
+                else if (e.equals("--no-optimize"))
+                    context.use_optimizer(false);
+                else
+                    throw new IllegalArgumentException("the daemon doesn't take " + e + ".");
+            }
+
+            if (source == null)
+                source = Scanner.map(Path.of(name));
+            List<Stmt> program = program(context, source);
+            if (program == null)
+                return 1;
+            return context.run_parsed(program) ? 0 : 1;
+        } catch (IllegalArgumentException ex) {
+            err.println("ERROR: " + ex.getMessage());
+            return 1;
+        } catch (IOException | RuntimeException | StackOverflowError ex) {
+            context.output().flush();
+            err.println("ERROR: " + ex);
+            return 1;
+        } finally {
+            context.output().flush();
+            err.flush();
+        }
+    }
+
+    // parsed once per source (and --no-optimize), then shared by every run of it
+    private List<Stmt> program(ExecutionContext context, ByteBuffer source) {
+        String key = AstCache.hex(AstCache.hash(source)) + (context.optimizing() ? "" : ".noopt");
+        List<Stmt> program;
+        synchronized (programs) {
+            program = programs.get(key);
+        }
+        if (program != null)
+            return program;
+
+        program = context.parse(new Scanner(source, Charset.defaultCharset()));
+        if (program != null) {
+            synchronized (programs) {
+                programs.put(key, program);
+            }
+        }
+        return program;
+    }
+
+    // the response: stdout and stderr frames from one run, then its exit code
+    private static final class Frames {
+        private final DataOutputStream out;
+
+        Frames(DataOutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void write(int stream, byte[] bytes, int from, int length) throws IOException {
+            out.writeByte(stream);
+            out.writeInt(length);
+            out.write(bytes, from, length);
+            out.flush();
+        }
+
+        synchronized void exit(int code) throws IOException {
+            out.writeByte(EXIT);
+            out.writeInt(code);
+            out.flush();
+        }
+
+        OutputStream stream(int stream) {
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    Frames.this.write(stream, new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int from, int length) throws IOException {
+                    Frames.this.write(stream, bytes, from, length);
+                }
+            };
+        }
+
+        // bol_bhai output, sent a line at a time like a terminal gets it
+        OutputSink sink() {
+            PrintStream out = new PrintStream(new BufferedOutputStream(stream(STDOUT), FRAME_SIZE), true,
+                    Charset.defaultCharset());
+            return new OutputSink() {
+                @Override
+                public void print(String text) {
+                    out.print(text);
+                }
+
+                @Override
+                public void flush() {
+                    out.flush();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ghulam;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * --client[=<socket>] [--engine=...] [--no-optimize] file.bhai
+ *
+ * Runs the file on a --daemon and gives back its exit code; "-" sends the
+ * source from stdin instead of the path. Nothing of the interpreter is
+ * loaded here, the client costs little more than starting a JVM.
+ */
+public final class DaemonClient {
+    public static int run(String[] args) {
+        Path socket = Daemon.default_socket();
+        List<String> flags = new ArrayList<>();
+        String file = null;
+        for (String arg : args) {
+            if (arg.equals("--client"))
+                continue;
+            if (arg.startsWith("--client="))
+                socket = Path.of(arg.substring("--client=".length()));
+            else if (arg.startsWith("--"))
+                flags.add(arg);
+            else
+                file = arg;
+        }
+
+        if (file == null) {
+            System.err.println("ERROR: Please provide an input source file.");
+            return 1;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException ex) {
+            System.err.println("ERROR: no bhai daemon on " + socket + ", start one with --daemon.");
+            return 1;
+        }
+
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(Daemon.MAGIC);
+            out.writeInt(flags.size());
+            for (String e : flags)
+                out.writeUTF(e);
+            if (file.equals("-")) {
+                byte[] source = System.in.readAllBytes();
+                out.writeByte(Daemon.SOURCE);
+                out.writeInt(source.length);
+                out.write(source);
+            } else {
+                out.writeByte(Daemon.FILE);
+                out.writeUTF(Path.of(file).toAbsolutePath().toString());
+            }
+            out.flush();
+
+            return receive(new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))));
+        } catch (IOException ex) {
+            System.err.println("ERROR: lost the bhai daemon: " + ex.getMessage());
+            return 1;
+        }
+    }
+
+    // copies the frames to stdout/stderr as they come, until the exit code
+    private static int receive(DataInputStream in) throws IOException {
+        OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+        OutputStream stderr = new FileOutputStream(FileDescriptor.err);
+        byte[] buffer = new byte[8 * 1024];
+        while (true) {
+            int stream = in.read();
+            if (stream < 0)
+                throw new EOFException("no exit code");
+            if (stream == Daemon.EXIT)
+                return in.readInt();
+
+            int length = in.readInt();
+            if (length > buffer.length)
+                buffer = new byte[length];
+            in.readFully(buffer, 0, length);
+            (stream == Daemon.STDERR ? stderr : stdout).write(buffer, 0, length);
+        }
+    }
+}
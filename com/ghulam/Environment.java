@@ -1,45 +1,105 @@
 package com.ghulam;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+/*
+ * Globals are a name -> Global map, every other scope is a frame:
+ * a fixed-size array of slots handed out by the Resolver.
+ *
+ * A Global is never removed once defined, so AST nodes can keep the one
+ * they looked up and skip the map from then on. Its version changes on
+ * every define/assign, which is what call sites check their cached
+ * callee against (see CallCache).
+ */
 public class Environment {
-    final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
+    static final class Global {
+        final Environment owner;
+        Object value;
+        int version;
+
+        private Global(Environment owner) {
+            this.owner = owner;
+        }
+
+        void set(Object value) {
+            this.value = value;
+            version++;
+        }
+    }
+
+    Environment enclosing;
+    private final Map<String, Global> values;
+    private Object[] slots;
 
     public Environment() {
         enclosing = null;
+        values = new HashMap<>();
     }
 
-    public Environment(Environment enclosing) {
+    public Environment(Environment enclosing, int slot_count) {
         this.enclosing = enclosing;
+        values = null;
+        slots = new Object[slot_count];
     }
 
     public void define(String name, Object value) {
-        values.put(name, value);
+        values.computeIfAbsent(name, e -> new Global(this)).set(value);
     }
 
     public void assign(Token name, Object value) {
-        if (values.containsKey(name.token)) {
-            values.put(name.token, value);
-            return;
-        }
+        global(name).set(value);
+    }
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
-        }
+    public Object get(Token name) {
+        return global(name).value;
+    }
+
+    // every global by name, for the script engine to copy back into its Bindings
+    void each_global(java.util.function.BiConsumer<String, Object> action) {
+        for (var e : values.entrySet())
+            action.accept(e.getKey(), e.getValue().value);
+    }
+
+    Global global(Token name) {
+        Global global = values.get(name.token);
+        if (global != null)
+            return global;
 
         throw new RuntimeError(name, " undefined variable " + name.token + ".");
     }
 
-    public Object get(Token name) {
-        if (values.containsKey(name.token))
-            return values.get(name.token);
+    // resolved locals, see Resolver
+    public void define_at(int slot, Object value) {
+        slots[slot] = value;
+    }
 
-        if (enclosing != null)
-            return enclosing.get(name);
+    public Object get_at(int depth, int slot) {
+        return ancestor(depth).slots[slot];
+    }
 
-        throw new RuntimeError(name, " undefined variable " + name.token + ".");
+    public void assign_at(int depth, int slot, Object value) {
+        ancestor(depth).slots[slot] = value;
+    }
+
+    private Environment ancestor(int depth) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++)
+            environment = environment.enclosing;
+        return environment;
+    }
+
+    // frames never outlive the block or call that made them (no closures),
+    // so the interpreter hands them back for reuse
+    void reuse(Environment enclosing, int slot_count) {
+        this.enclosing = enclosing;
+        if (slots.length < slot_count)
+            slots = new Object[slot_count];
+    }
+
+    void clear() {
+        enclosing = null;
+        Arrays.fill(slots, null);
     }
 }
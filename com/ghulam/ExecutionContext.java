@@ -0,0 +1,430 @@
+package com.ghulam;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.List;
+import static com.ghulam.TokenType.EOF_TOKEN;
+
+/*
+ * One running program and everything it owns: its Interpreter (with its
+ * globals) or VM, the bol_bhai sink, where errors go, the error flags and
+ * the --cache/--profile/--stats hooks. Nothing in here is shared, so any
+ * number of contexts can run at once on different threads; a context
+ * itself is used by one thread at a time.
+ *
+ * Runner's static methods drive one context for the command line, which
+ * exits the JVM on a compile error like it always has. Any other context
+ * just stops that program: run_code/run_file give back false.
+ *
+ * The Scanner, Parser and Resolver report through Runner.error, which
+ * finds the context running on the current thread with current().
+ */
+public final class ExecutionContext {
+    private static final ThreadLocal<ExecutionContext> running = new ThreadLocal<>();
+
+    // unwinds scan/parse/resolve after the first error when the JVM is not exited
+    private static final class Abort extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Abort() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final boolean exit_on_error;
+    private final PrintStream err;
+    private OutputSink out;
+
+    // nothing is made until it is needed: startup of short scripts is mostly class loading
+    private Interpreter interpreter = null; // made on the first tree run
+    private VM vm = null; // only made for the "vm" engine
+    private boolean optimize = true;
+    private boolean memo_stats = false;
+    private Path cache_dir = null;
+    private AstCache cache = null;
+    private Profiler profiler = null;
+    private Path profile_stacks = null;
+    private Stats stats = null;
+    private final Memo.Counters memo_counters = new Memo.Counters(); // this context's own, see Memo
+
+    private boolean some_error = false;
+    private boolean runtime_error = false;
+    private String error_message = null; // the first error, for embedders
+    private int error_line = -1;
+
+    // bol_bhai output goes to `out`, error messages to `err`
+    public ExecutionContext(OutputSink out, PrintStream err) {
+        this(out, err, false);
+    }
+
+    ExecutionContext(OutputSink out, PrintStream err, boolean exit_on_error) {
+        this.out = out;
+        this.err = err;
+        this.exit_on_error = exit_on_error;
+    }
+
+    // the context running on this thread, Runner's own one outside of any run
+    static ExecutionContext current() {
+        ExecutionContext context = running.get();
+        return context != null ? context : Runner.context();
+    }
+
+    /**********************************
+     * settings
+     */
+
+    // "tree" is the tree-walking Interpreter, "vm" compiles to bytecode first
+    public void use_engine(String engine) {
+        if (engine.equals("vm")) {
+            vm = new VM();
+            vm.set_output(out);
+            vm.memo_counters = memo_counters;
+        } else if (engine.equals("tree")) {
+            vm = null;
+        } else {
+            throw new IllegalArgumentException("unknown engine '" + engine + "', expected 'tree' or 'vm'.");
+        }
+    }
+
+    public void use_optimizer(boolean enabled) {
+        optimize = enabled;
+    }
+
+    public void use_memo_stats(boolean enabled) {
+        memo_stats = enabled;
+    }
+
+    // an AstCache is not thread-safe, so every context has its own; the entries on disk can be shared
+    public void use_cache(Path dir) {
+        cache_dir = dir;
+        cache = dir == null ? null : new AstCache(dir);
+    }
+
+    public void use_profiler(Path stacks) {
+        profiler = new Profiler();
+        profile_stacks = stacks;
+    }
+
+    void use_stats(Stats stats) {
+        this.stats = stats;
+    }
+
+    public void use_output(OutputSink sink) {
+        out = sink;
+        if (interpreter != null)
+            interpreter.set_output(sink);
+        if (vm != null)
+            vm.set_output(sink);
+    }
+
+    // a fresh context with the same engine, optimizer, --memo-stats and cache, e.g. one per file of a batch
+    public ExecutionContext copy(OutputSink out, PrintStream err) {
+        ExecutionContext context = new ExecutionContext(out, err);
+        if (vm != null)
+            context.use_engine("vm");
+        context.use_optimizer(optimize);
+        context.use_memo_stats(memo_stats);
+        context.use_cache(cache_dir);
+        return context;
+    }
+
+    boolean optimizing() {
+        return optimize;
+    }
+
+    public OutputSink output() {
+        return out;
+    }
+
+    public boolean had_error() {
+        return some_error || runtime_error;
+    }
+
+    // "expected a variable name at '='", null without an error
+    public String error_message() {
+        return error_message;
+    }
+
+    public int error_line() {
+        return error_line;
+    }
+
+    // the REPL goes on after an error
+    void clear_error() {
+        some_error = false;
+        error_message = null;
+    }
+
+    /**********************************
+     * running
+     */
+
+    // true if it ran to the end without a compile or runtime error
+    public boolean run_code(String source) {
+        ExecutionContext outer = enter();
+        try {
+            run(parse_code(new Scanner(source)));
+        } catch (Abort abort) {
+            // reported already
+        } finally {
+            running.set(outer);
+        }
+        return !had_error();
+    }
+
+    // same for a whole file, then the end of run reports (--memo-stats, --profile, --stats)
+    public boolean run_file(Path source_file) throws IOException {
+        ExecutionContext outer = enter();
+        try {
+            run(parse_file(source_file));
+        } catch (Abort abort) {
+            // reported already
+        } finally {
+            running.set(outer);
+            out.flush();
+        }
+
+        if (memo_stats)
+            memo_counters.report(err);
+        if (profiler != null)
+            report_profile();
+        report_stats();
+        return !had_error();
+    }
+
+    // scan + parse + resolve a file, null if there was an error
+    List<Stmt> parse(Path source_file) throws IOException {
+        ExecutionContext outer = enter();
+        try {
+            return parse_file(source_file);
+        } catch (Abort abort) {
+            return null;
+        } finally {
+            running.set(outer);
+        }
+    }
+
+    // same for any source, the tree can then be run any number of times with interpret()
+    List<Stmt> parse(Scanner scanner) {
+        ExecutionContext outer = enter();
+        try {
+            return parse_code(scanner);
+        } catch (Abort abort) {
+            return null;
+        } finally {
+            running.set(outer);
+        }
+    }
+
+    // a program from parse() on this context's engine, it can be run again and by other contexts
+    boolean run_parsed(List<Stmt> parsed_out) {
+        ExecutionContext outer = enter();
+        try {
+            run(parsed_out);
+        } finally {
+            running.set(outer);
+            out.flush();
+        }
+        return !had_error();
+    }
+
+    // a parsed program on the tree engine, gives back its top-level lauta_bhai value
+    Object interpret(List<Stmt> parsed_out) {
+        ExecutionContext outer = enter();
+        try {
+            return interpreter().interpret(parsed_out);
+        } finally {
+            running.set(outer);
+            out.flush();
+        }
+    }
+
+    void report_stats() {
+        if (stats != null)
+            stats.report(err);
+    }
+
+    private ExecutionContext enter() {
+        ExecutionContext outer = running.get();
+        running.set(this);
+        return outer;
+    }
+
+    private void run(List<Stmt> parsed_out) {
+        if (parsed_out == null)
+            return;
+
+        if (stats != null) {
+            stats.runs++;
+            stats.count_nodes(parsed_out);
+        }
+
+        if (vm != null && profiler == null) {
+            begin();
+            BytecodeCompiler compiler = new BytecodeCompiler(vm);
+            VmFunction script = compiler.compile(parsed_out);
+            end(Stats.COMPILE);
+
+            begin();
+            vm.interpret(script);
+            end(Stats.INTERPRET);
+            return;
+        }
+
+        Interpreter interpreter = interpreter();
+        if (stats != null)
+            stats.tree_runs++;
+        begin();
+        interpreter.interpret(parsed_out);
+        end(Stats.INTERPRET);
+    }
+
+    Interpreter interpreter() {
+        if (interpreter == null) {
+            interpreter = new Interpreter();
+            interpreter.set_output(out);
+            if (profiler != null) {
+                if (vm != null)
+                    err.println("NOTE: --profile runs the tree engine.");
+                interpreter.set_profiler(profiler);
+            }
+            interpreter.set_stats(stats);
+            interpreter.set_memo_counters(memo_counters);
+        }
+        return interpreter;
+    }
+
+    // phase timing for --stats
+    private void begin() {
+        if (stats != null)
+            stats.begin();
+    }
+
+    private void end(int phase) {
+        if (stats != null)
+            stats.end(phase);
+    }
+
+    private void report_profile() {
+        profiler.report(err);
+        if (profile_stacks == null)
+            return;
+        try {
+            profiler.write_stacks(profile_stacks);
+            err.println("collapsed stacks: " + profile_stacks);
+        } catch (IOException ex) {
+            err.println("ERROR: can't write " + profile_stacks + ": " + ex.getMessage());
+        }
+    }
+
+    // like parse_code, but a cached tree for the same source skips scan + parse
+    private List<Stmt> parse_file(Path source_file) throws IOException {
+        // tokens are pulled from the mapped file while parsing, the file is never one big String
+        ByteBuffer bytes = Scanner.map(source_file);
+        Scanner scanner = new Scanner(bytes, Charset.defaultCharset());
+        if (cache == null)
+            return parse_code(scanner);
+
+        byte[] hash = AstCache.hash(bytes);
+        begin();
+        var parsed_out = cache.load(hash, optimize);
+        end(Stats.CACHE_LOAD);
+        if (parsed_out == null) {
+            parsed_out = parse_tree(scanner);
+            if (parsed_out == null)
+                return null;
+            cache.store(hash, optimize, parsed_out);
+        }
+
+        return resolve(parsed_out);
+    }
+
+    // scan + parse + resolve, null if there was an error
+    private List<Stmt> parse_code(Scanner scanner) {
+        var parsed_out = parse_tree(scanner);
+        if (parsed_out == null)
+            return null;
+        return resolve(parsed_out);
+    }
+
+    // scan + parse (+ optimize), what the cache keeps
+    private List<Stmt> parse_tree(Scanner scanner) {
+        begin();
+        Parser parser = new Parser(scanner);
+        var parsed_out = parser.parse();
+        end(Stats.SCAN_PARSE);
+        if (stats != null)
+            stats.tokens += scanner.token_count();
+
+        if (some_error) {
+            out.print("\nTerminating the prog." + System.lineSeparator());
+            out.flush();
+            return null;
+        }
+
+        if (optimize) {
+            begin();
+            Optimizer optimizer = new Optimizer();
+            parsed_out = optimizer.optimize(parsed_out);
+            end(Stats.OPTIMIZE);
+        }
+        return parsed_out;
+    }
+
+    private List<Stmt> resolve(List<Stmt> parsed_out) {
+        begin();
+        Resolver resolver = new Resolver();
+        resolver.resolve(parsed_out);
+        end(Stats.RESOLVE);
+        return parsed_out;
+    }
+
+    /**********************************
+     * errors
+     */
+
+    void error(int line, String msg) {
+        report(line, "", msg);
+    }
+
+    void error(Token token, String msg) {
+        if (token.type == EOF_TOKEN)
+            report(token.line, " at the end", msg);
+        else
+            report(token.line, " at '" + token.token + "'", msg);
+    }
+
+    // a problem that doesn't stop the program
+    void warning(String msg) {
+        out.flush();
+        err.println(msg);
+    }
+
+    void runtime_error(RuntimeError error) {
+        out.flush();
+        err.println("runtime error: " + error.getMessage());
+        runtime_error = true;
+        if (error_message == null) {
+            error_message = error.getMessage().trim();
+            error_line = error.token != null ? error.token.line : -1;
+        }
+    }
+
+    private void report(int line, String where, String msg) {
+        if (error_message == null) {
+            error_message = msg.trim() + where;
+            error_line = line;
+        }
+        out.flush();
+        err.println("Error at [ line " + line + " ]: " + where + ".");
+        out.print("Message: " + msg + System.lineSeparator());
+        out.flush();
+        some_error = true;
+        if (exit_on_error)
+            System.exit(1); // ??
+        throw new Abort();
+    }
+}
@@ -42,6 +42,9 @@ public abstract class Expr {
 
     public static class Variable extends Expr {
         final Token name;
+        int depth = -1;
+        int slot = -1;
+        Environment.Global global;
 
         public Variable(Token name) {
             this.name = name;
@@ -56,6 +59,9 @@ public abstract class Expr {
     public static class Assign extends Expr {
         final Token name;
         final Expr value;
+        int depth = -1;
+        int slot = -1;
+        Environment.Global global;
 
         public Assign(Token name, Expr value) {
             this.name = name;
@@ -104,6 +110,7 @@ public abstract class Expr {
         final Expr left;
         final Token operator;
         final Expr right;
+        int state;
 
         public Binary(Expr left, Token operator, Expr right) {
             this.left = left;
@@ -121,6 +128,7 @@ public abstract class Expr {
         final Expr callee;
         final Token paren;
         final List<Expr> arguments;
+        CallCache cache;
 
         public Call(Expr callee, Token paren, List<Expr> arguments) {
             this.callee = callee;
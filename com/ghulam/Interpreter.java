@@ -15,43 +15,122 @@ import com.ghulam.Stmt.Block;
 import com.ghulam.Stmt.Expression;
 import com.ghulam.Stmt.Function;
 import com.ghulam.Stmt.If;
+import com.ghulam.Stmt.Parallel;
 import com.ghulam.Stmt.Print;
 import com.ghulam.Stmt.Return;
 import com.ghulam.Stmt.Var;
 import com.ghulam.Stmt.While;
 
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Environment globals = new Environment();
-    private Environment environment = globals;
+    // Expr.Binary.state
+    private static final int UNINITIALIZED = 0;
+    private static final int DOUBLE = 1;
+    private static final int DOUBLE_CONSTANT = 2; // right side is a number literal
+    private static final int GENERIC = 3;
+
+    final Environment globals;
+    private Environment environment;
+    private OutputSink out = OutputSink.standard();
+    Profiler profiler = null; // only for --profile
+    private Stats stats = null; // only for --stats
+    private Memo.Counters memo_counters = new Memo.Counters(); // for --memo-stats
+    int parallel_depth = 0; // saath_chalao_bhai loops running on this Interpreter, see ParallelLoop
+    int error_line = -1; // innermost statement an exception came out of, for those without a token
+
+    // set by lauta_bhai: statement lists stop running, and BhaiFunction.call
+    // picks up the value (or the tail call) and clears it
+    boolean returning = false;
+    Object return_value = null;
+    BhaiFunction tail_function = null;
+    List<Object> tail_arguments = null;
+
+    // released frames, reused by blocks and calls
+    private static final int MAX_FREE_FRAMES = 64;
+    private final Environment[] free_frames = new Environment[MAX_FREE_FRAMES];
+    private int free_count = 0;
+
+    public Interpreter() {
+        globals = new Environment();
+        environment = globals;
+        Natives.define_all(globals);
+    }
+
+    // shares the globals of `parent`, which only reads them while its loop runs
+    Interpreter(Interpreter parent, OutputSink out) {
+        globals = parent.globals;
+        environment = globals;
+        this.out = out;
+        memo_counters = parent.memo_counters;
+        stats = parent.stats == null ? null : new Stats();
+        parallel_depth = 1;
+    }
+
+    public void set_output(OutputSink out) {
+        this.out = out;
+    }
 
-    public void interpret(List<Stmt> stmts) {
+    void set_profiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    void set_stats(Stats stats) {
+        this.stats = stats;
+    }
+
+    // counters of a worker whose chunk is done, see ParallelLoop
+    void add_stats(Interpreter worker) {
+        if (stats != null)
+            stats.add(worker.stats);
+    }
+
+    void set_memo_counters(Memo.Counters counters) {
+        this.memo_counters = counters;
+    }
+
+    // gives back the value of a top-level lauta_bhai, null if there was none
+    public Object interpret(List<Stmt> stmts) {
+        error_line = -1;
+        if (profiler != null)
+            profiler.start();
+        Object result = null;
         try {
-            for (var e : stmts)
-                e.accept(this);
+            for (var e : stmts) {
+                execute(e);
+
+                // top-level lauta_bhai stops the program
+                if (returning) {
+                    result = return_value;
+                    break;
+                }
+            }
         } catch (RuntimeError error) {
             // System.out.println(error);
             Runner.runtime_error(error);
         }
+        if (profiler != null)
+            profiler.finish();
+        returning = false;
+        return_value = null;
+        return result;
     }
 
-    private String stringfy(Object object) {
-        if (object == null)
-            return "nalla";
-
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
+    @Override
+    public Void visitBlockStmt(Block stmt) {
+        if (stmt.slot_count == 0) {
+            for (Stmt e : stmt.statements) {
+                execute(e);
+                if (returning)
+                    break;
             }
-            return text;
+            return null;
         }
 
-        return object.toString();
-    }
-
-    @Override
-    public Void visitBlockStmt(Block stmt) {
-        execute_block(stmt.statements, new Environment(environment));
+        Environment frame = acquire_frame(environment, stmt.slot_count);
+        try {
+            execute_block(stmt.statements, frame);
+        } finally {
+            release_frame(frame);
+        }
         return null;
     }
 
@@ -64,7 +143,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitPrintStmt(Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.print(stringfy(value));
+        out.print(Values.stringfy(value));
         return null;
     }
 
@@ -75,7 +154,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         if (stmt.initializer != null)
             value = evaluate(stmt.initializer);
 
-        environment.define(stmt.name.token, value);
+        define(stmt.name, stmt.slot, value);
         return null;
     }
 
@@ -91,25 +170,106 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitWhileStmt(While stmt) {
+        if (profiler != null)
+            return profiled_while(stmt);
+
         while (is_truthy(evaluate(stmt.condition))) {
             execute(stmt.body);
+            if (returning)
+                break;
         }
         return null;
     }
 
+    @Override
+    public Void visitParallelStmt(Parallel stmt) {
+        Object start = evaluate(stmt.counter.initializer);
+
+        // the limit is worked out once, in the loop's scope like chalao_bhai's condition
+        Object end;
+        Environment frame = acquire_frame(environment, stmt.slot_count);
+        frame.define_at(stmt.counter.slot, start);
+        Environment previous = environment;
+        try {
+            environment = frame;
+            end = evaluate(((Binary) stmt.condition).right);
+        } finally {
+            environment = previous;
+            release_frame(frame);
+        }
+
+        if (!(start instanceof Double) || !(end instanceof Double))
+            throw new RuntimeError(stmt.keyword, " saath_chalao_bhai needs numbers to count from and to.");
+
+        ParallelLoop loop = new ParallelLoop(stmt, (Double) start, (Double) end);
+        // the Profiler is not thread-safe, a profiled run is one iteration after the other
+        if (profiler != null || loop.count < 2)
+            loop.run_here(this, environment);
+        else
+            loop.run(this, environment, out);
+        return null;
+    }
+
+    // one iteration of a saath_chalao_bhai, in a frame of its own
+    void iterate(Parallel stmt, Environment enclosing, Object counter) {
+        Environment frame = acquire_frame(enclosing, stmt.slot_count);
+        frame.define_at(stmt.counter.slot, counter);
+        Environment previous = environment;
+        try {
+            environment = frame;
+            execute(stmt.body);
+        } finally {
+            environment = previous;
+            release_frame(frame);
+        }
+    }
+
     @Override
     public Void visitFunctionStmt(Function stmt) {
-        BhaiFunction function = new BhaiFunction(stmt);
-        environment.define(stmt.name.token, function);
+        BhaiFunction function = stmt.pure ? new MemoFunction(stmt, memo_counters) : new BhaiFunction(stmt);
+        define(stmt.name, stmt.slot, function);
         return null;
     }
 
     @Override
     public Void visitReturnStmt(Return stmt) {
+        if (stmt.tail) {
+            // lauta_bhai f(...): hand f and its arguments back to the
+            // BhaiFunction.call loop instead of calling it from here
+            Call call = (Call) stmt.value;
+            BhaiCallable function;
+            List<Object> arguments;
+
+            CallCache cache = call.cache;
+            if (cache != null && cache.is_valid(globals)) {
+                function = cache.function;
+                arguments = evaluate_arguments(call);
+            } else {
+                Object callee = evaluate(call.callee);
+                arguments = evaluate_arguments(call);
+                function = check_call(call, callee);
+            }
+
+            if (stats != null)
+                stats.calls++;
+
+            // a yaad_rakh_bhai function is called normally so it can use its cache
+            if (function instanceof BhaiFunction && !(function instanceof MemoFunction)) {
+                tail_function = (BhaiFunction) function;
+                tail_arguments = arguments;
+            } else {
+                return_value = function.call(this, arguments);
+            }
+            returning = true;
+            return null;
+        }
+
         Object value = null;
         if (stmt.value != null)
             value = evaluate(stmt.value);
-        throw new BhaiReturn(value);
+        return_value = value;
+        returning = true;
+        return null;
     }
 
     @Override
@@ -124,13 +284,24 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Variable expr) {
-        return environment.get(expr.name);
+        if (expr.depth < 0)
+            return global(expr).value;
+        if (stats != null && expr.depth > stats.deepest_scope)
+            stats.deepest_scope = expr.depth;
+        return environment.get_at(expr.depth, expr.slot);
     }
 
     @Override
     public Object visitAssignExpr(Assign expr) {
         Object value = evaluate(expr.value);
-        environment.assign(expr.name, value);
+        if (expr.depth < 0) {
+            // a function declared outside the loop, the Resolver can't see where it is called from
+            if (parallel_depth > 0)
+                throw new RuntimeError(expr.name, " saath_chalao_bhai can't assign to the global " + expr.name.token + ".");
+            global(expr).set(value);
+        } else {
+            environment.assign_at(expr.depth, expr.slot, value);
+        }
 
         return value;
     }
@@ -164,81 +335,253 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
+    /*
+     * Binary nodes specialize themselves on what they see. The first run
+     * decides: if both operands were numbers the node switches to an
+     * unboxed double path (reading the right literal directly when it is
+     * a number constant), otherwise it goes generic. A specialized node
+     * that meets a non-number later goes generic for good.
+     */
     @Override
     public Object visitBinaryExpr(Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
-
-        var token_type = expr.operator.type;
-        switch (token_type) {
-            case MINUS_OP_TOKEN:
-                return (double) left - (double) right;
-            case PLUS_OP_TOKEN: {
-                if (left instanceof Double && right instanceof Double)
-                    return (double) left + (double) right;
-
-                if (left instanceof String && right instanceof Double)
-                    return (String) left + String.valueOf(right);
-
-                if (left instanceof Double && right instanceof String)
-                    return String.valueOf(left) + (String) right;
+        if (expr.state == GENERIC)
+            return Values.binary(expr.operator.type, evaluate(expr.left), evaluate(expr.right));
+        if (expr.state == UNINITIALIZED)
+            return binary_first(expr);
 
-                if (left instanceof String && right instanceof String)
-                    return (String) left + (String) right;
-
-            }
-            case STAR_OP_TOKEN:
-                return (double) left * (double) right;
-            case SLASH_OP_TOKEN:
-                return (double) left / (double) right;
-            case EQUAL_EQUAL_TOKEN:
-                return is_equal(left, right);
-            case BANG_EQUAL_TOKEN:
-                return !is_equal(left, right);
-            case LESS_TOKEN:
-                return (double) left < (double) right;
-            case LESS_EQUAL_TOKEN:
-                return (double) left <= (double) right;
-            case GREATER_TOKEN:
-                return (double) left > (double) right;
-            case GREATER_EQUAL_TOKEN:
-                return (double) left >= (double) right;
-
-            default:
-                return null;
+        try {
+            if (is_arithmetic(expr.operator.type))
+                return arithmetic_double(expr);
+            return compare_double(expr);
+        } catch (UnexpectedValue e) {
+            return e.value;
         }
     }
 
     @Override
     public Object visitCallExpr(Call expr) {
-        Object callee = evaluate(expr.callee);
+        // same global, same function: no lookup and no checks
+        CallCache cache = expr.cache;
+        if (cache != null && cache.is_valid(globals))
+            return call(expr, cache.function, null);
+
+        return call(expr, null, evaluate(expr.callee));
+    }
+
+    // helper
+    private Object evaluate(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private List<Object> evaluate_arguments(Call expr) {
         List<Object> arguments = new ArrayList<>();
         for (Expr argument : expr.arguments) {
             arguments.add(evaluate(argument));
         }
+        return arguments;
+    }
+
+    // up to four arguments are passed without a list; function is null
+    // when callee still has to be checked (after the arguments, as always)
+    private Object call(Call expr, BhaiCallable function, Object callee) {
+        if (stats != null)
+            stats.calls++;
+        List<Expr> arguments = expr.arguments;
+        switch (arguments.size()) {
+            case 0:
+                return checked(expr, function, callee).call0(this);
+            case 1: {
+                Object a0 = evaluate(arguments.get(0));
+                return checked(expr, function, callee).call1(this, a0);
+            }
+            case 2: {
+                Object a0 = evaluate(arguments.get(0));
+                Object a1 = evaluate(arguments.get(1));
+                return checked(expr, function, callee).call2(this, a0, a1);
+            }
+            case 3: {
+                Object a0 = evaluate(arguments.get(0));
+                Object a1 = evaluate(arguments.get(1));
+                Object a2 = evaluate(arguments.get(2));
+                return checked(expr, function, callee).call3(this, a0, a1, a2);
+            }
+            case 4: {
+                Object a0 = evaluate(arguments.get(0));
+                Object a1 = evaluate(arguments.get(1));
+                Object a2 = evaluate(arguments.get(2));
+                Object a3 = evaluate(arguments.get(3));
+                return checked(expr, function, callee).call4(this, a0, a1, a2, a3);
+            }
+
+            default: {
+                List<Object> values = evaluate_arguments(expr);
+                return checked(expr, function, callee).call(this, values);
+            }
+        }
+    }
 
+    private BhaiCallable checked(Call expr, BhaiCallable function, Object callee) {
+        if (function != null)
+            return function;
+        return check_call(expr, callee);
+    }
+
+    private BhaiCallable check_call(Call expr, Object callee) {
         if (!(callee instanceof BhaiCallable)) {
             throw new RuntimeError(expr.paren, "Can only call functions");
         }
 
         BhaiCallable function = (BhaiCallable) callee;
 
-        if (arguments.size() != function.arity()) {
+        // arity -1 takes any number of arguments
+        if (function.arity() >= 0 && expr.arguments.size() != function.arity()) {
             throw new RuntimeError(expr.paren, "Expected " +
                     function.arity() + " arguments but got " +
-                    arguments.size() + ".");
+                    expr.arguments.size() + ".");
         }
 
-        return function.call(this, arguments);
+        if (expr.callee instanceof Variable && ((Variable) expr.callee).depth < 0)
+            expr.cache = new CallCache(((Variable) expr.callee).global, function);
+        return function;
     }
 
-    // helper
-    private Object evaluate(Expr expr) {
-        return expr.accept(this);
+    // the node keeps its Global after the first lookup
+    private Environment.Global global(Variable expr) {
+        Environment.Global global = expr.global;
+        if (global == null || global.owner != globals) {
+            global = globals.global(expr.name);
+            expr.global = global;
+        }
+        return global;
+    }
+
+    private Environment.Global global(Assign expr) {
+        Environment.Global global = expr.global;
+        if (global == null || global.owner != globals) {
+            global = globals.global(expr.name);
+            expr.global = global;
+        }
+        return global;
+    }
+
+    private Object binary_first(Binary expr) {
+        Object left = evaluate(expr.left);
+        Object right = evaluate(expr.right);
+
+        if (left instanceof Double && right instanceof Double)
+            expr.state = expr.right instanceof Literal ? DOUBLE_CONSTANT : DOUBLE;
+        else
+            expr.state = GENERIC;
+
+        return Values.binary(expr.operator.type, left, right);
+    }
+
+    // numbers stay unboxed through nested specialized arithmetic
+    private double evaluate_double(Expr expr) {
+        if (expr instanceof Binary) {
+            Binary binary = (Binary) expr;
+            if ((binary.state == DOUBLE || binary.state == DOUBLE_CONSTANT) && is_arithmetic(binary.operator.type))
+                return arithmetic_double(binary);
+        }
+
+        Object value = evaluate(expr);
+        if (value instanceof Double)
+            return (double) value;
+        throw new UnexpectedValue(value);
+    }
+
+    private double arithmetic_double(Binary expr) {
+        double left = left_double(expr);
+        double right = right_double(expr, left);
+
+        switch (expr.operator.type) {
+            case MINUS_OP_TOKEN:
+                return left - right;
+            case PLUS_OP_TOKEN:
+                return left + right;
+            case STAR_OP_TOKEN:
+                return left * right;
+            default:
+                return left / right;
+        }
+    }
+
+    private boolean compare_double(Binary expr) {
+        double left = left_double(expr);
+        double right = right_double(expr, left);
+
+        switch (expr.operator.type) {
+            case LESS_TOKEN:
+                return left < right;
+            case LESS_EQUAL_TOKEN:
+                return left <= right;
+            case GREATER_TOKEN:
+                return left > right;
+            case GREATER_EQUAL_TOKEN:
+                return left >= right;
+            case EQUAL_EQUAL_TOKEN: // same as Double.equals
+                return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+            default:
+                return Double.doubleToLongBits(left) != Double.doubleToLongBits(right);
+        }
+    }
+
+    private double left_double(Binary expr) {
+        try {
+            return evaluate_double(expr.left);
+        } catch (UnexpectedValue e) {
+            throw despecialize(expr, e.value, evaluate(expr.right));
+        }
+    }
+
+    private double right_double(Binary expr, double left) {
+        if (expr.state == DOUBLE_CONSTANT)
+            return (double) ((Literal) expr.right).value;
+
+        try {
+            return evaluate_double(expr.right);
+        } catch (UnexpectedValue e) {
+            throw despecialize(expr, left, e.value);
+        }
+    }
+
+    // finish this evaluation the generic way, and stay generic from now on
+    private UnexpectedValue despecialize(Binary expr, Object left, Object right) {
+        expr.state = GENERIC;
+        return new UnexpectedValue(Values.binary(expr.operator.type, left, right));
+    }
+
+    private boolean is_arithmetic(TokenType type) {
+        return type == TokenType.PLUS_OP_TOKEN || type == TokenType.MINUS_OP_TOKEN
+                || type == TokenType.STAR_OP_TOKEN || type == TokenType.SLASH_OP_TOKEN;
     }
 
     private void execute(Stmt stmt) {
-        stmt.accept(this);
+        if (profiler != null)
+            profiler.hit(stmt.line);
+        if (stats != null)
+            stats.statements++;
+        try {
+            stmt.accept(this);
+        } catch (RuntimeException ex) {
+            if (error_line < 0)
+                error_line = stmt.line;
+            throw ex;
+        }
+    }
+
+    // the loop above, counted and timed
+    private Void profiled_while(While stmt) {
+        long start = System.nanoTime();
+        long iterations = 0;
+        while (is_truthy(evaluate(stmt.condition))) {
+            iterations++;
+            execute(stmt.body);
+            if (returning)
+                break;
+        }
+        profiler.loop(stmt, iterations, System.nanoTime() - start);
+        return null;
     }
 
     void execute_block(List<Stmt> stmts, Environment environment) {
@@ -247,26 +590,50 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             this.environment = environment;
             for (Stmt stmt : stmts) {
                 execute(stmt);
+                if (returning)
+                    break;
             }
         } finally {
             this.environment = previous;
         }
     }
 
+    Environment acquire_frame(Environment enclosing, int slot_count) {
+        if (free_count == 0) {
+            if (stats != null)
+                stats.environments_created++;
+            return new Environment(enclosing, slot_count);
+        }
+        if (stats != null)
+            stats.environments_reused++;
+
+        Environment frame = free_frames[--free_count];
+        free_frames[free_count] = null;
+        frame.reuse(enclosing, slot_count);
+        return frame;
+    }
+
+    void release_frame(Environment frame) {
+        if (free_count == MAX_FREE_FRAMES)
+            return;
+
+        frame.clear();
+        free_frames[free_count++] = frame;
+    }
+
+    // slot is -1 for globals
+    private void define(Token name, int slot, Object value) {
+        if (slot < 0)
+            environment.define(name.token, value);
+        else
+            environment.define_at(slot, value);
+    }
+
     private boolean is_truthy(Object obj) {
-        if (obj == null)
-            return false;
-        if (obj instanceof Boolean)
-            return (boolean) obj;
-        return true;
+        return Values.is_truthy(obj);
     }
 
     private boolean is_equal(Object o1, Object o2) {
-        if (o1 == null && o2 == null)
-            return true;
-        if (o1 == null)
-            return false;
-
-        return o1.equals(o2);
+        return Values.is_equal(o1, o2);
     }
 }
@@ -0,0 +1,95 @@
+package com.ghulam;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Result cache of a yaad_rakh_bhai function, keyed by its arguments.
+ * Least recently used results go once CAPACITY is reached.
+ *
+ * Hits and misses are counted per declaration (name and line) in the
+ * Counters of the run, so every cache made for the same karna_bhai adds up
+ * in its report() and runs in the same JVM (--batch, --daemon) don't mix.
+ */
+final class Memo {
+    static final int CAPACITY = 1 << 16;
+    // get() result for arguments that aren't cached, nalla is a valid result
+    static final Object MISSING = new Object();
+
+    private final Map<Object, Object> results = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+    private final AtomicLongArray stats; // hits, misses
+
+    // hits and misses of one run, by declaration
+    static final class Counters {
+        private final Map<String, AtomicLongArray> counters = new LinkedHashMap<>();
+
+        // caches of one declaration can be used from several threads (saath_chalao_bhai)
+        synchronized AtomicLongArray of(String name, int line) {
+            return counters.computeIfAbsent(name + " (line " + line + ")", e -> new AtomicLongArray(2));
+        }
+
+        synchronized void report(PrintStream out) {
+            for (var e : counters.entrySet()) {
+                AtomicLongArray stats = e.getValue();
+                out.println("yaad_rakh_bhai " + e.getKey() + ": " + stats.get(0) + " hits, " + stats.get(1) + " misses");
+            }
+        }
+    }
+
+    Memo(Token name, Counters counters) {
+        this(name.token, name.line, counters);
+    }
+
+    // a compiled program (AotCompiler) keeps its tokens as name and line
+    Memo(String name, int line, Counters counters) {
+        stats = counters.of(name, line);
+    }
+
+    synchronized Object get(Object key) {
+        Object value = results.getOrDefault(key, MISSING);
+        stats.incrementAndGet(value == MISSING ? 1 : 0);
+        return value;
+    }
+
+    synchronized void put(Object key, Object value) {
+        results.put(key, value);
+    }
+
+    // keys: strings are flattened so equal text is the same key
+    static Object key() {
+        return Collections.emptyList();
+    }
+
+    static Object key(Object a0) {
+        return BhaiString.flatten(a0);
+    }
+
+    static Object key(Object... arguments) {
+        Object[] key = new Object[arguments.length];
+        for (int i = 0; i < key.length; i++)
+            key[i] = BhaiString.flatten(arguments[i]);
+        return Arrays.asList(key);
+    }
+
+    static Object key(List<Object> arguments) {
+        if (arguments.size() == 1)
+            return key(arguments.get(0));
+        return key(arguments.toArray());
+    }
+
+    static Object key(Object[] values, int from, int count) {
+        if (count == 1)
+            return key(values[from]);
+        return key(Arrays.copyOfRange(values, from, from + count));
+    }
+}
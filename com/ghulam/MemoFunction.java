@@ -0,0 +1,79 @@
+package com.ghulam;
+
+import java.util.List;
+
+// a yaad_rakh_bhai karna_bhai, runs only for arguments it hasn't seen yet
+public class MemoFunction extends BhaiFunction {
+    private final Memo memo;
+
+    public MemoFunction(Stmt.Function declaration, Memo.Counters counters) {
+        super(declaration);
+        memo = new Memo(declaration.name, counters);
+    }
+
+    @Override
+    public Object call(Interpreter Interpreter, List<Object> arguments) {
+        Object key = Memo.key(arguments);
+        Object value = memo.get(key);
+        if (value == Memo.MISSING) {
+            value = super.call(Interpreter, arguments);
+            memo.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object call0(Interpreter Interpreter) {
+        Object key = Memo.key();
+        Object value = memo.get(key);
+        if (value == Memo.MISSING) {
+            value = super.call0(Interpreter);
+            memo.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object call1(Interpreter Interpreter, Object a0) {
+        Object key = Memo.key(a0);
+        Object value = memo.get(key);
+        if (value == Memo.MISSING) {
+            value = super.call1(Interpreter, a0);
+            memo.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object call2(Interpreter Interpreter, Object a0, Object a1) {
+        Object key = Memo.key(a0, a1);
+        Object value = memo.get(key);
+        if (value == Memo.MISSING) {
+            value = super.call2(Interpreter, a0, a1);
+            memo.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object call3(Interpreter Interpreter, Object a0, Object a1, Object a2) {
+        Object key = Memo.key(a0, a1, a2);
+        Object value = memo.get(key);
+        if (value == Memo.MISSING) {
+            value = super.call3(Interpreter, a0, a1, a2);
+            memo.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object call4(Interpreter Interpreter, Object a0, Object a1, Object a2, Object a3) {
+        Object key = Memo.key(a0, a1, a2, a3);
+        Object value = memo.get(key);
+        if (value == Memo.MISSING) {
+            value = super.call4(Interpreter, a0, a1, a2, a3);
+            memo.put(key, value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ghulam;
+
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/*
+ * A builtin written in Java, see Natives. Fixed-arity builtins are called
+ * straight from call0..call3, so no argument list is made for them.
+ * arity -1 takes any number of arguments (as a list).
+ */
+public final class NativeFunction implements BhaiCallable {
+    interface Body3 {
+        Object apply(Object a0, Object a1, Object a2);
+    }
+
+    final String name;
+    private final int arity;
+    private final Supplier<Object> body0;
+    private final UnaryOperator<Object> body1;
+    private final BinaryOperator<Object> body2;
+    private final Body3 body3;
+    private final Function<List<Object>, Object> body_n;
+
+    private NativeFunction(String name, int arity, Supplier<Object> body0, UnaryOperator<Object> body1,
+            BinaryOperator<Object> body2, Body3 body3, Function<List<Object>, Object> body_n) {
+        this.name = name;
+        this.arity = arity;
+        this.body0 = body0;
+        this.body1 = body1;
+        this.body2 = body2;
+        this.body3 = body3;
+        this.body_n = body_n;
+    }
+
+    static NativeFunction of(String name, Supplier<Object> body) {
+        return new NativeFunction(name, 0, body, null, null, null, null);
+    }
+
+    static NativeFunction of(String name, UnaryOperator<Object> body) {
+        return new NativeFunction(name, 1, null, body, null, null, null);
+    }
+
+    static NativeFunction of(String name, BinaryOperator<Object> body) {
+        return new NativeFunction(name, 2, null, null, body, null, null);
+    }
+
+    static NativeFunction of(String name, Body3 body) {
+        return new NativeFunction(name, 3, null, null, null, body, null);
+    }
+
+    static NativeFunction variadic(String name, Function<List<Object>, Object> body) {
+        return new NativeFunction(name, -1, null, null, null, null, body);
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter Interpreter, List<Object> arguments) {
+        switch (arity) {
+            case 0:
+                return body0.get();
+            case 1:
+                return body1.apply(arguments.get(0));
+            case 2:
+                return body2.apply(arguments.get(0), arguments.get(1));
+            case 3:
+                return body3.apply(arguments.get(0), arguments.get(1), arguments.get(2));
+
+            default:
+                return body_n.apply(arguments);
+        }
+    }
+
+    @Override
+    public Object call0(Interpreter Interpreter) {
+        if (body0 != null)
+            return body0.get();
+        return BhaiCallable.super.call0(Interpreter);
+    }
+
+    @Override
+    public Object call1(Interpreter Interpreter, Object a0) {
+        if (body1 != null)
+            return body1.apply(a0);
+        return BhaiCallable.super.call1(Interpreter, a0);
+    }
+
+    @Override
+    public Object call2(Interpreter Interpreter, Object a0, Object a1) {
+        if (body2 != null)
+            return body2.apply(a0, a1);
+        return BhaiCallable.super.call2(Interpreter, a0, a1);
+    }
+
+    @Override
+    public Object call3(Interpreter Interpreter, Object a0, Object a1, Object a2) {
+        if (body3 != null)
+            return body3.apply(a0, a1, a2);
+        return BhaiCallable.super.call3(Interpreter, a0, a1, a2);
+    }
+
+    @Override
+    public String toString() {
+        return "<native " + name + ">";
+    }
+}
@@ -0,0 +1,149 @@
+package com.ghulam;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Builtins every engine starts with in its globals:
+ *
+ *   clock() nano_time()                         timing
+ *   sqrt abs floor ceil round pow min max random  math
+ *   len substring index_of char_at upper lower trim  strings
+ *   str num type_of                             conversions
+ *
+ * Numbers come back as doubles like everywhere else. Bad arguments are a
+ * runtime error, except num() which gives nalla for text that isn't a
+ * number.
+ */
+final class Natives {
+    private Natives() {
+    }
+
+    private static final Map<String, NativeFunction> all = new LinkedHashMap<>();
+    // these depend on more than their arguments, yaad_rakh_bhai functions can't call them
+    private static final Set<String> impure = Set.of("clock", "nano_time", "random");
+
+    static {
+        // timing
+        add(NativeFunction.of("clock", () -> System.currentTimeMillis() / 1000.0));
+        add(NativeFunction.of("nano_time", () -> (double) System.nanoTime()));
+
+        // math
+        add(NativeFunction.of("sqrt", x -> Math.sqrt(number("sqrt", x))));
+        add(NativeFunction.of("abs", x -> Math.abs(number("abs", x))));
+        add(NativeFunction.of("floor", x -> Math.floor(number("floor", x))));
+        add(NativeFunction.of("ceil", x -> Math.ceil(number("ceil", x))));
+        add(NativeFunction.of("round", x -> (double) Math.round(number("round", x))));
+        add(NativeFunction.of("pow", (x, y) -> Math.pow(number("pow", x), number("pow", y))));
+        add(NativeFunction.variadic("min", arguments -> extreme("min", arguments, -1)));
+        add(NativeFunction.variadic("max", arguments -> extreme("max", arguments, 1)));
+        add(NativeFunction.of("random", () -> ThreadLocalRandom.current().nextDouble()));
+
+        // strings
+        add(NativeFunction.of("len", s -> (double) string("len", s).length()));
+        add(NativeFunction.of("substring", (s, from, to) -> {
+            String text = string("substring", s);
+            int start = index("substring", from);
+            int end = index("substring", to);
+            if (start < 0 || end > text.length() || start > end)
+                throw error("substring", "range " + start + ".." + end + " is outside \"" + text + "\"");
+            return text.substring(start, end);
+        }));
+        add(NativeFunction.of("index_of", (s, part) -> (double) string("index_of", s)
+                .indexOf(string("index_of", part))));
+        add(NativeFunction.of("char_at", (s, i) -> {
+            String text = string("char_at", s);
+            int index = index("char_at", i);
+            if (index < 0 || index >= text.length())
+                throw error("char_at", "index " + index + " is outside \"" + text + "\"");
+            return String.valueOf(text.charAt(index));
+        }));
+        add(NativeFunction.of("upper", s -> string("upper", s).toUpperCase()));
+        add(NativeFunction.of("lower", s -> string("lower", s).toLowerCase()));
+        add(NativeFunction.of("trim", s -> string("trim", s).trim()));
+
+        // conversions
+        add(NativeFunction.of("str", x -> Values.stringfy(x)));
+        add(NativeFunction.of("num", x -> {
+            if (x instanceof Double)
+                return x;
+            try {
+                return Double.parseDouble(string("num", x).trim());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }));
+        add(NativeFunction.of("type_of", x -> type_of(x)));
+    }
+
+    static Map<String, NativeFunction> all() {
+        return all;
+    }
+
+    static void define_all(Environment globals) {
+        for (var e : all.entrySet())
+            globals.define(e.getKey(), e.getValue());
+    }
+
+    static boolean is_pure(String name) {
+        return all.containsKey(name) && !impure.contains(name);
+    }
+
+    // helper
+    private static void add(NativeFunction function) {
+        all.put(function.name, function);
+    }
+
+    private static double number(String name, Object value) {
+        if (value instanceof Double)
+            return (double) value;
+        throw error(name, "expected a number but got " + type_of(value));
+    }
+
+    private static int index(String name, Object value) {
+        double number = number(name, value);
+        if (number != Math.floor(number))
+            throw error(name, "expected a whole number but got " + Values.stringfy(value));
+        return (int) number;
+    }
+
+    private static String string(String name, Object value) {
+        if (value instanceof CharSequence)
+            return value.toString();
+        throw error(name, "expected a string but got " + type_of(value));
+    }
+
+    private static Object extreme(String name, List<Object> arguments, int sign) {
+        if (arguments.isEmpty())
+            throw error(name, "expected at least 1 argument");
+
+        double best = number(name, arguments.get(0));
+        for (int i = 1; i < arguments.size(); i++) {
+            double number = number(name, arguments.get(i));
+            if (Double.compare(number, best) * sign > 0)
+                best = number;
+        }
+        return best;
+    }
+
+    private static String type_of(Object value) {
+        if (value == null)
+            return "nalla";
+        if (value instanceof Double)
+            return "number";
+        if (value instanceof CharSequence || value instanceof Character)
+            return "string";
+        if (value instanceof Boolean)
+            return "bool";
+        if (value instanceof BhaiCallable || value instanceof VmFunction)
+            return "function";
+        return "unknown";
+    }
+
+    private static RuntimeError error(String name, String msg) {
+        return new RuntimeError(new Token(TokenType.IDENTIFIER_TOKEN, name, null, 0), name + ": " + msg);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ghulam;
+
+/*
+ * Instruction set of the VM. Each instruction is one int in Chunk.code,
+ * followed by its operands (listed next to each opcode).
+ */
+final class OpCode {
+    private OpCode() {
+    }
+
+    static final int CONSTANT = 0; // constant index
+    static final int NIL = 1;
+    static final int TRUE = 2;
+    static final int FALSE = 3;
+    static final int POP = 4;
+
+    static final int GET_LOCAL = 5; // slot
+    static final int SET_LOCAL = 6; // slot, leaves value on the stack
+    static final int DEFINE_LOCAL = 7; // slot, pops value
+    static final int GET_GLOBAL = 8; // global index, name constant
+    static final int SET_GLOBAL = 9; // global index, name constant
+    static final int DEFINE_GLOBAL = 10; // global index
+
+    static final int EQUAL = 11;
+    static final int NOT_EQUAL = 12;
+    static final int GREATER = 13;
+    static final int GREATER_EQUAL = 14;
+    static final int LESS = 15;
+    static final int LESS_EQUAL = 16;
+    static final int ADD = 17;
+    static final int SUBTRACT = 18;
+    static final int MULTIPLY = 19;
+    static final int DIVIDE = 20;
+    static final int NOT = 21;
+    static final int NEGATE = 22;
+
+    static final int PRINT = 23;
+    static final int JUMP = 24; // target
+    static final int JUMP_IF_FALSE = 25; // target, keeps condition
+    static final int JUMP_IF_TRUE = 26; // target, keeps condition
+    static final int POP_JUMP_IF_FALSE = 27; // target
+    static final int CALL = 28; // argument count, paren constant
+    static final int RETURN = 29;
+    static final int TAIL_CALL = 30; // argument count, paren constant, always followed by RETURN
+    static final int PARALLEL_ENTER = 31; // start slot (limit and k after it), keyword constant
+    static final int PARALLEL_EXIT = 32;
+}
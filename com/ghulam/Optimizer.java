@@ -0,0 +1,401 @@
+package com.ghulam;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ghulam.Expr.Assign;
+import com.ghulam.Expr.Binary;
+import com.ghulam.Expr.Call;
+import com.ghulam.Expr.Grouping;
+import com.ghulam.Expr.Literal;
+import com.ghulam.Expr.Logical;
+import com.ghulam.Expr.Unary;
+import com.ghulam.Expr.Variable;
+import com.ghulam.Stmt.Block;
+import com.ghulam.Stmt.Expression;
+import com.ghulam.Stmt.Function;
+import com.ghulam.Stmt.If;
+import com.ghulam.Stmt.Parallel;
+import com.ghulam.Stmt.Print;
+import com.ghulam.Stmt.Return;
+import com.ghulam.Stmt.Var;
+import com.ghulam.Stmt.While;
+
+/*
+ * Simplifies the parsed tree before it is resolved:
+ *
+ * - folds Unary/Binary/Logical nodes whose operands are literals, using
+ *   the same Values code as the engines; anything that would fail at
+ *   runtime is left alone so it still fails there
+ * - replaces agar_bhai/jab_tak_bhai with a literal condition by the
+ *   branch that runs, or drops them
+ * - drops empty blocks and expression statements that are just a literal
+ * - a block local that is initialized with a literal and never assigned
+ *   or redeclared later in its block becomes that literal
+ *
+ * Visitor methods return the new node; statements return null when they
+ * go away.
+ */
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    // block locals currently known to hold a literal
+    private Map<String, Literal> known = new HashMap<>();
+
+    public List<Stmt> optimize(List<Stmt> stmts) {
+        // globals can be assigned from any function, nothing is propagated here
+        List<Stmt> result = new ArrayList<>();
+        for (Stmt stmt : stmts)
+            add(result, optimize(stmt));
+        return result;
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Block stmt) {
+        List<Stmt> stmts = optimize_block(stmt.statements);
+        if (stmts.isEmpty())
+            return null;
+        return new Block(stmts);
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Expression stmt) {
+        Expr expr = optimize(stmt.expression);
+        if (expr instanceof Literal)
+            return null;
+        return new Expression(expr);
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Print stmt) {
+        return new Print(optimize(stmt.expression));
+    }
+
+    @Override
+    public Stmt visitVarStmt(Var stmt) {
+        Expr initializer = stmt.initializer == null ? null : optimize(stmt.initializer);
+        return new Var(stmt.name, initializer);
+    }
+
+    @Override
+    public Stmt visitIfStmt(If stmt) {
+        Expr condition = optimize(stmt.condition);
+
+        if (condition instanceof Literal) {
+            if (Values.is_truthy(((Literal) condition).value))
+                return optimize(stmt.then_branch);
+            return stmt.else_branch == null ? null : optimize(stmt.else_branch);
+        }
+
+        Stmt then_branch = or_empty(optimize(stmt.then_branch));
+        Stmt else_branch = stmt.else_branch == null ? null : optimize(stmt.else_branch);
+        return new If(condition, then_branch, else_branch);
+    }
+
+    @Override
+    public Stmt visitWhileStmt(While stmt) {
+        Expr condition = optimize(stmt.condition);
+        if (condition instanceof Literal && !Values.is_truthy(((Literal) condition).value))
+            return null;
+
+        return new While(condition, or_empty(optimize(stmt.body)));
+    }
+
+    @Override
+    public Stmt visitParallelStmt(Parallel stmt) {
+        Var counter = (Var) optimize(stmt.counter);
+
+        // the counter hides an outer name, and the header keeps its shape for the engines
+        Map<String, Literal> enclosing = known;
+        known = new HashMap<>(enclosing);
+        known.remove(counter.name.token);
+        Expr condition = optimize(stmt.condition);
+        Expr increment = optimize(stmt.increment);
+        Stmt body = or_empty(optimize(stmt.body));
+        known = enclosing;
+
+        return new Parallel(stmt.keyword, counter, condition, increment, body);
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Function stmt) {
+        // a function body can't see the locals around it
+        Map<String, Literal> enclosing = known;
+        known = new HashMap<>();
+        List<Stmt> body = optimize_block(stmt.body);
+        known = enclosing;
+
+        Function function = new Function(stmt.name, stmt.params, body);
+        function.pure = stmt.pure;
+        return function;
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Return stmt) {
+        Expr value = stmt.value == null ? null : optimize(stmt.value);
+        return new Return(stmt.keyword, value);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Grouping expr) {
+        // grouping only matters to the parser
+        return optimize(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitVariableExpr(Variable expr) {
+        Literal value = known.get(expr.name.token);
+        if (value != null)
+            return value;
+        return expr;
+    }
+
+    @Override
+    public Expr visitAssignExpr(Assign expr) {
+        return new Assign(expr.name, optimize(expr.value));
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Logical expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+
+        if (left instanceof Literal) {
+            boolean truthy = Values.is_truthy(((Literal) left).value);
+            if (expr.operator.type == TokenType.OR_TOKEN)
+                return truthy ? left : right;
+            return truthy ? right : left;
+        }
+
+        return new Logical(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Unary expr) {
+        Expr right = optimize(expr.right);
+
+        if (right instanceof Literal) {
+            Object value = ((Literal) right).value;
+            if (expr.operator.type == TokenType.BANG_TOKEN)
+                return new Literal(!Values.is_truthy(value));
+            if (expr.operator.type == TokenType.MINUS_OP_TOKEN && value instanceof Double)
+                return new Literal(-(double) value);
+        }
+
+        return new Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Binary expr) {
+        Expr left = optimize(expr.left);
+        Expr right = optimize(expr.right);
+
+        if (left instanceof Literal && right instanceof Literal) {
+            try {
+                Object value = Values.binary(expr.operator.type, ((Literal) left).value, ((Literal) right).value);
+                return new Literal(BhaiString.flatten(value));
+            } catch (RuntimeException ex) {
+                // e.g. "a" - 1, keep it so it fails when it runs
+            }
+        }
+
+        return new Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitCallExpr(Call expr) {
+        Expr callee = optimize(expr.callee);
+        List<Expr> arguments = new ArrayList<>();
+        for (Expr argument : expr.arguments)
+            arguments.add(optimize(argument));
+        return new Call(callee, expr.paren, arguments);
+    }
+
+    // helper
+    private Stmt optimize(Stmt stmt) {
+        Stmt result = stmt.accept(this);
+        // rebuilt nodes keep the line of the one they replace
+        if (result != null && result.line == 0)
+            result.line = stmt.line;
+        return result;
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // statements of a block or function body, with literal propagation
+    private List<Stmt> optimize_block(List<Stmt> stmts) {
+        Map<String, Literal> enclosing = known;
+        known = new HashMap<>(enclosing);
+
+        List<Stmt> result = new ArrayList<>();
+        for (int i = 0; i < stmts.size(); i++) {
+            Stmt stmt = optimize(stmts.get(i));
+
+            if (stmt instanceof Var && ((Var) stmt).initializer instanceof Literal) {
+                Var var = (Var) stmt;
+                if (!Rebinding.find(var.name.token, stmts.subList(i + 1, stmts.size()))) {
+                    known.put(var.name.token, (Literal) var.initializer);
+                    continue;
+                }
+            }
+
+            // a redeclaration hides whatever was known about the outer name
+            if (stmt instanceof Var)
+                known.remove(((Var) stmt).name.token);
+            if (stmt instanceof Function)
+                known.remove(((Function) stmt).name.token);
+
+            add(result, stmt);
+        }
+
+        known = enclosing;
+        return result;
+    }
+
+    private void add(List<Stmt> stmts, Stmt stmt) {
+        if (stmt == null)
+            return;
+        if (stmt instanceof Block && ((Block) stmt).statements.isEmpty())
+            return;
+        stmts.add(stmt);
+    }
+
+    // if/while bodies still need a statement
+    private Stmt or_empty(Stmt stmt) {
+        if (stmt == null)
+            return new Block(new ArrayList<>());
+        return stmt;
+    }
+
+    /*
+     * Looks for anything that would make propagating a local unsafe:
+     * an assignment to it, or a declaration of the same name (even in a
+     * nested block). Function bodies are skipped, they can't see the local,
+     * but a function with that name counts as a declaration.
+     */
+    private static class Rebinding implements Expr.Visitor<Boolean>, Stmt.Visitor<Boolean> {
+        private final String name;
+
+        private Rebinding(String name) {
+            this.name = name;
+        }
+
+        static boolean find(String name, List<Stmt> stmts) {
+            return new Rebinding(name).any(stmts);
+        }
+
+        private boolean any(List<Stmt> stmts) {
+            for (Stmt stmt : stmts) {
+                if (stmt != null && stmt.accept(this))
+                    return true;
+            }
+            return false;
+        }
+
+        private boolean any(Expr expr) {
+            return expr != null && expr.accept(this);
+        }
+
+        private boolean any(Stmt stmt) {
+            return stmt != null && stmt.accept(this);
+        }
+
+        @Override
+        public Boolean visitBlockStmt(Block stmt) {
+            return any(stmt.statements);
+        }
+
+        @Override
+        public Boolean visitExpressionStmt(Expression stmt) {
+            return any(stmt.expression);
+        }
+
+        @Override
+        public Boolean visitPrintStmt(Print stmt) {
+            return any(stmt.expression);
+        }
+
+        @Override
+        public Boolean visitVarStmt(Var stmt) {
+            return stmt.name.token.equals(name) || any(stmt.initializer);
+        }
+
+        @Override
+        public Boolean visitIfStmt(If stmt) {
+            return any(stmt.condition) || any(stmt.then_branch) || any(stmt.else_branch);
+        }
+
+        @Override
+        public Boolean visitWhileStmt(While stmt) {
+            return any(stmt.condition) || any(stmt.body);
+        }
+
+        @Override
+        public Boolean visitParallelStmt(Parallel stmt) {
+            return any(stmt.counter) || any(stmt.condition) || any(stmt.increment) || any(stmt.body);
+        }
+
+        @Override
+        public Boolean visitFunctionStmt(Function stmt) {
+            return stmt.name.token.equals(name);
+        }
+
+        @Override
+        public Boolean visitReturnStmt(Return stmt) {
+            return any(stmt.value);
+        }
+
+        @Override
+        public Boolean visitGroupingExpr(Grouping expr) {
+            return any(expr.expression);
+        }
+
+        @Override
+        public Boolean visitLiteralExpr(Literal expr) {
+            return false;
+        }
+
+        @Override
+        public Boolean visitVariableExpr(Variable expr) {
+            return false;
+        }
+
+        @Override
+        public Boolean visitAssignExpr(Assign expr) {
+            return expr.name.token.equals(name) || any(expr.value);
+        }
+
+        @Override
+        public Boolean visitLogicalExpr(Logical expr) {
+            return any(expr.left) || any(expr.right);
+        }
+
+        @Override
+        public Boolean visitUnaryExpr(Unary expr) {
+            return any(expr.right);
+        }
+
+        @Override
+        public Boolean visitBinaryExpr(Binary expr) {
+            return any(expr.left) || any(expr.right);
+        }
+
+        @Override
+        public Boolean visitCallExpr(Call expr) {
+            if (any(expr.callee))
+                return true;
+            for (Expr argument : expr.arguments) {
+                if (any(argument))
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.ghulam;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/*
+ * Where bol_bhai output goes. Buffered sinks only reach the terminal on
+ * flush(), which Runner calls on exit, on errors and before every REPL
+ * prompt.
+ */
+public interface OutputSink {
+    int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    void print(String text);
+
+    void flush();
+
+    // System.out, as before
+    static OutputSink standard() {
+        return new OutputSink() {
+            @Override
+            public void print(String text) {
+                System.out.print(text);
+            }
+
+            @Override
+            public void flush() {
+                System.out.flush();
+            }
+        };
+    }
+
+    // big unsynchronized buffer straight on stdout
+    static OutputSink buffered(int buffer_size) {
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), Charset.defaultCharset()),
+                buffer_size);
+        return to(writer);
+    }
+
+    // encodes into a byte buffer and writes it to the stdout channel
+    static OutputSink channel(int buffer_size) {
+        return new ChannelSink(new FileOutputStream(FileDescriptor.out).getChannel(), buffer_size);
+    }
+
+    // for embedders, e.g. a StringBuilder or their own Writer
+    static OutputSink to(Appendable out) {
+        return new OutputSink() {
+            @Override
+            public void print(String text) {
+                try {
+                    out.append(text);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public void flush() {
+                try {
+                    if (out instanceof Flushable)
+                        ((Flushable) out).flush();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+    }
+
+    // "direct", "buffered" or "channel", as given to --output
+    static OutputSink named(String name) {
+        switch (name) {
+            case "direct":
+                return standard();
+            case "buffered":
+                return buffered(DEFAULT_BUFFER_SIZE);
+            case "channel":
+                return channel(DEFAULT_BUFFER_SIZE);
+
+            default:
+                return null;
+        }
+    }
+
+    final class ChannelSink implements OutputSink {
+        private final FileChannel channel;
+        private final ByteBuffer bytes;
+        private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        ChannelSink(FileChannel channel, int buffer_size) {
+            this.channel = channel;
+            this.bytes = ByteBuffer.allocateDirect(buffer_size);
+        }
+
+        @Override
+        public void print(String text) {
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, true);
+                if (result.isUnderflow())
+                    break;
+                drain(); // overflow, buffer is full
+            }
+            // end of input: a stateful charset may still have bytes to write
+            while (encoder.flush(bytes).isOverflow())
+                drain();
+        }
+
+        @Override
+        public void flush() {
+            drain();
+        }
+
+        private void drain() {
+            try {
+                bytes.flip();
+                while (bytes.hasRemaining())
+                    channel.write(bytes);
+                bytes.clear();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
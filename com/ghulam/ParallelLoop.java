@@ -0,0 +1,155 @@
+package com.ghulam;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.ghulam.Expr.Assign;
+import com.ghulam.Expr.Binary;
+import com.ghulam.Expr.Literal;
+import com.ghulam.Stmt.Parallel;
+
+/*
+ * saath_chalao_bhai on the tree engine. The counter takes the values
+ * start + k * step for k = 0, 1, ... while it is below (or at) the limit;
+ * they are cut into a few chunks per core and a ForkJoinPool runs the
+ * chunks. Each chunk has an Interpreter of its own sharing the globals
+ * and the scope around the loop, and every iteration gets a frame of its
+ * own with the counter in it.
+ *
+ * Nothing outside the loop is written while it runs: the Resolver only
+ * lets the body assign to variables declared in it, and no global is
+ * assigned while the loop runs, on the workers or on the calling thread
+ * (the VM and the AOT code check the same).
+ *
+ * bol_bhai output is kept per chunk and printed in chunk order once they
+ * are all done, so it is the same as one iteration after the other would
+ * print. After a runtime error the output up to it and the error of the
+ * lowest failing iteration are what is left, like in the plain loop.
+ *
+ * Each worker counts --stats on its own, the counts are added up once
+ * the chunks are done. --profile runs the loop on the calling thread.
+ */
+final class ParallelLoop {
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long MAX_COUNT = 1L << 53; // past it start + k * step stops moving
+
+    // one worker per core, started on the first loop that needs it
+    private static final class Workers {
+        static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    private final Parallel stmt;
+    private final double start;
+    private final double step;
+    final long count; // iterations
+
+    ParallelLoop(Parallel stmt, double start, double end) {
+        this.stmt = stmt;
+        this.start = start;
+        // the Parser only takes `i = i + <number>` for the increment
+        this.step = (Double) ((Literal) ((Binary) ((Assign) stmt.increment).value).right).value;
+
+        boolean inclusive = ((Binary) stmt.condition).operator.type == TokenType.LESS_EQUAL_TOKEN;
+        double span = (end - start) / step;
+        long last = span >= 0 ? (long) Math.min(Math.floor(span), MAX_COUNT) : -1;
+        // floor() can be one off after rounding, the comparison is what the plain loop does
+        while (last >= 0 && !in_range(start + last * step, end, inclusive))
+            last--;
+        while (last < MAX_COUNT && in_range(start + (last + 1) * step, end, inclusive))
+            last++;
+        count = last + 1;
+    }
+
+    // every iteration on the calling thread, still each in a frame of its own
+    void run_here(Interpreter interpreter, Environment enclosing) {
+        interpreter.parallel_depth++;
+        try {
+            for (long k = 0; k < count; k++)
+                interpreter.iterate(stmt, enclosing, start + k * step);
+        } finally {
+            interpreter.parallel_depth--;
+        }
+    }
+
+    // on the pool, `interpreter` waits and prints the output
+    void run(Interpreter interpreter, Environment enclosing, OutputSink out) {
+        ForkJoinPool pool = Workers.pool;
+        int chunks = (int) Math.min(count, (long) pool.getParallelism() * CHUNKS_PER_THREAD);
+        Chunks all = new Chunks(interpreter, enclosing, chunks);
+        pool.invoke(all.range(0, chunks));
+        for (Interpreter worker : all.workers)
+            interpreter.add_stats(worker);
+
+        for (int c = 0; c < chunks; c++) {
+            out.print(all.outputs[c].toString());
+            Throwable failure = all.failures[c];
+            if (failure != null)
+                interpreter.error_line = all.error_lines[c];
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+        }
+    }
+
+    // helper
+    private static boolean in_range(double counter, double end, boolean inclusive) {
+        return inclusive ? counter <= end : counter < end;
+    }
+
+    // results of one run, a slot per chunk
+    private final class Chunks {
+        final Interpreter interpreter;
+        final Environment enclosing;
+        final int chunks;
+        final StringBuilder[] outputs;
+        final Throwable[] failures;
+        final int[] error_lines;
+        final Interpreter[] workers;
+
+        Chunks(Interpreter interpreter, Environment enclosing, int chunks) {
+            this.interpreter = interpreter;
+            this.enclosing = enclosing;
+            this.chunks = chunks;
+            this.outputs = new StringBuilder[chunks];
+            this.failures = new Throwable[chunks];
+            this.error_lines = new int[chunks];
+            this.workers = new Interpreter[chunks];
+        }
+
+        // chunks from..to-1, split in halves until it is one
+        RecursiveAction range(int from, int to) {
+            return new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    if (to - from == 1) {
+                        run_chunk(from);
+                        return;
+                    }
+                    int middle = (from + to) >>> 1;
+                    invokeAll(range(from, middle), range(middle, to));
+                }
+            };
+        }
+
+        // first iteration of chunk c, the first `count % chunks` chunks take one more
+        private long first(int c) {
+            return c * (count / chunks) + Math.min(c, count % chunks);
+        }
+
+        private void run_chunk(int c) {
+            StringBuilder output = new StringBuilder();
+            outputs[c] = output;
+            Interpreter worker = new Interpreter(interpreter, OutputSink.to(output));
+            workers[c] = worker;
+            try {
+                for (long k = first(c), end = first(c + 1); k < end; k++)
+                    worker.iterate(stmt, enclosing, start + k * step);
+            } catch (RuntimeException | Error ex) {
+                // the rest of the chunk doesn't run, like the rest of the plain loop
+                failures[c] = ex;
+                error_lines[c] = worker.error_line;
+            }
+        }
+    }
+}
@@ -2,12 +2,18 @@ package com.ghulam;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import static com.ghulam.TokenType.*;
 
+/*
+ * Pulls tokens as it needs them, one token of lookahead is all the grammar
+ * asks for, so only the current and the previous token are kept around.
+ */
 public class Parser {
-    private final List<Token> tokens;
-    private int current_pos = 0;
+    private final Iterator<Token> tokens;
+    private Token current;
+    private Token previous;
 
     public static class ParseError extends RuntimeException {
     }
@@ -17,8 +23,13 @@ public class Parser {
         return new ParseError();
     }
 
-    public Parser(List<Token> tokens) {
+    public Parser(Iterator<Token> tokens) {
         this.tokens = tokens;
+        this.current = tokens.next();
+    }
+
+    public Parser(List<Token> tokens) {
+        this(tokens.iterator());
     }
 
     List<Stmt> parse() {
@@ -150,20 +161,23 @@ public class Parser {
     }
 
     private Stmt statement() {
+        int line = peek().line;
         if (match(FOR_TOKEN))
-            return for_statement();
+            return at(line, for_statement());
         if (match(IF_TOKEN))
-            return if_statement();
+            return at(line, if_statement());
         if (match(WHILE_TOKEN))
-            return while_statement();
+            return at(line, while_statement());
+        if (match(PARALLEL_TOKEN))
+            return at(line, parallel_statement());
         if (match(PRINT_TOKEN))
-            return print_statement();
+            return at(line, print_statement());
         if (match(RETURN_TOKEN))
-            return return_statement();
+            return at(line, return_statement());
         if (match(LEFT_CURLY_TOKEN))
-            return new Stmt.Block(block());
+            return at(line, new Stmt.Block(block()));
 
-        return expression_statement();
+        return at(line, expression_statement());
     }
 
     private Stmt print_statement() {
@@ -181,11 +195,18 @@ public class Parser {
     }
 
     private Stmt declaration() {
+        int line = peek().line;
         try {
             if (match(FUNCTION_TOKEN))
-                return function("func");
+                return at(line, function("func"));
+            if (match(MEMO_TOKEN)) {
+                consume(FUNCTION_TOKEN, " expected karna_bhai after yaad_rakh_bhai");
+                Stmt.Function function = function("func");
+                function.pure = true;
+                return at(line, function);
+            }
             if (match(VAR_TOKEN))
-                return var_declaration();
+                return at(line, var_declaration());
 
             return statement();
         } catch (ParseError error) {
@@ -257,15 +278,16 @@ public class Parser {
     }
 
     private Stmt for_statement() {
+        int line = previous().line;
         consume(LEFT_PAREN_TOKEN, " expect '(' after 'for'");
 
         Stmt initializer;
         if (match(SEMICOLON_TOKEN)) {
             initializer = null;
         } else if (match(VAR_TOKEN)) {
-            initializer = var_declaration();
+            initializer = at(line, var_declaration());
         } else {
-            initializer = expression_statement();
+            initializer = at(line, expression_statement());
         }
 
         Expr condition = null;
@@ -282,11 +304,11 @@ public class Parser {
 
         Stmt body = statement();
         if (increment != null) {
-            body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
+            body = at(line, new Stmt.Block(Arrays.asList(body, at(line, new Stmt.Expression(increment)))));
         }
         if (condition == null)
             condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
+        body = at(line, new Stmt.While(condition, body));
 
         if (initializer != null) {
             body = new Stmt.Block(Arrays.asList(initializer, body));
@@ -295,6 +317,48 @@ public class Parser {
         return body;
     }
 
+    // saath_chalao_bhai (bhai_ye_hai i = start; i < end; i = i + step), the only header it takes:
+    // the iterations have to be known before the loop starts to be split up
+    private Stmt parallel_statement() {
+        Token keyword = previous();
+        consume(LEFT_PAREN_TOKEN, " expect '(' after 'saath_chalao_bhai'");
+        consume(VAR_TOKEN, " saath_chalao_bhai needs a counter of its own: (bhai_ye_hai i = start; ...)");
+        Stmt.Var counter = at(keyword.line, (Stmt.Var) var_declaration());
+
+        Expr condition = expression();
+        consume(SEMICOLON_TOKEN, " expect ';' after loop condition");
+        Expr increment = expression();
+        consume(RIGHT_PAREN_TOKEN, " expect ')' after saath_chalao_bhai clauses");
+
+        if (counter.initializer == null || !counts_up(counter.name, condition, increment))
+            throw error(keyword, " saath_chalao_bhai needs (bhai_ye_hai i = start; i < end; i = i + step), with < or <= and a number step above 0");
+
+        Stmt body = statement();
+        return new Stmt.Parallel(keyword, counter, condition, increment, body);
+    }
+
+    // `i < end` or `i <= end`, and `i = i + step`
+    private static boolean counts_up(Token counter, Expr condition, Expr increment) {
+        if (!(condition instanceof Expr.Binary) || !(increment instanceof Expr.Assign))
+            return false;
+        Expr.Binary test = (Expr.Binary) condition;
+        if (!is_variable(test.left, counter)
+                || (test.operator.type != LESS_TOKEN && test.operator.type != LESS_EQUAL_TOKEN))
+            return false;
+
+        Expr.Assign assign = (Expr.Assign) increment;
+        if (!assign.name.token.equals(counter.token) || !(assign.value instanceof Expr.Binary))
+            return false;
+        Expr.Binary step = (Expr.Binary) assign.value;
+        return step.operator.type == PLUS_OP_TOKEN && is_variable(step.left, counter)
+                && step.right instanceof Expr.Literal && ((Expr.Literal) step.right).value instanceof Double
+                && (Double) ((Expr.Literal) step.right).value > 0;
+    }
+
+    private static boolean is_variable(Expr expr, Token name) {
+        return expr instanceof Expr.Variable && ((Expr.Variable) expr).name.token.equals(name.token);
+    }
+
     private Expr call() {
         Expr expr = primary();
         while (true) {
@@ -355,25 +419,33 @@ public class Parser {
     }
 
     // helper
+    private static <S extends Stmt> S at(int line, S stmt) {
+        if (stmt != null)
+            stmt.line = line;
+        return stmt;
+    }
+
     private boolean end_of_file() {
         return peek().type.equals(EOF_TOKEN);
     }
 
     // return current token
     private Token peek() {
-        return tokens.get(current_pos);
+        return current;
     }
 
     // consume token
     private Token advance() {
-        if (!end_of_file())
-            ++current_pos;
+        if (!end_of_file()) {
+            previous = current;
+            current = tokens.next();
+        }
         return previous();
     }
 
-    // return token at currrent_pos - 1;
+    // return the token consumed last
     private Token previous() {
-        return tokens.get(current_pos - 1);
+        return previous;
     }
 
     // check if these tokens are matching to list of TokenType
@@ -0,0 +1,200 @@
+package com.ghulam;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * --profile, for the tree-walking Interpreter. The Interpreter calls in
+ * only when it has a Profiler, so a normal run pays one null check per
+ * statement and per call.
+ *
+ *   functions  calls, inclusive and self time for every karna_bhai
+ *   loops      runs, iterations and time for every loop
+ *   lines      how many statements ran on each source line
+ *
+ * Calls also build a call tree; write_stacks() turns it into collapsed
+ * stacks ("<script>;main:3;fib:1 <self us>") for flamegraph.pl and the
+ * like. A recursive function's inclusive time counts only its outermost
+ * call, so it is never more than the run itself.
+ */
+final class Profiler {
+    private static final class Entry {
+        final String name;
+        long calls;
+        long inclusive;
+        long self;
+        int active; // calls of it on the stack right now
+
+        Entry(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Node {
+        final Entry entry;
+        final Map<Entry, Node> children = new IdentityHashMap<>();
+        long self;
+
+        Node(Entry entry) {
+            this.entry = entry;
+        }
+
+        Node child(Entry entry) {
+            Node node = children.get(entry);
+            if (node == null) {
+                node = new Node(entry);
+                children.put(entry, node);
+            }
+            return node;
+        }
+    }
+
+    private static final class Loop {
+        final int line;
+        long runs;
+        long iterations;
+        long time;
+
+        Loop(int line) {
+            this.line = line;
+        }
+    }
+
+    private final Map<Stmt.Function, Entry> entries = new IdentityHashMap<>();
+    private final Map<Stmt.While, Loop> loops = new IdentityHashMap<>();
+    private final Node root = new Node(new Entry("<script>"));
+    private long[] line_hits = new long[64];
+    private long total = 0;
+
+    // the call stack
+    private Node[] nodes = new Node[64];
+    private long[] starts = new long[64];
+    private long[] children_time = new long[64];
+    private int depth = 0;
+
+    // around a whole program (or a REPL line)
+    void start() {
+        push(root);
+    }
+
+    void finish() {
+        // a runtime error leaves the calls it came out of on the stack
+        while (depth > 1)
+            exit();
+        if (depth == 1)
+            total += pop();
+    }
+
+    void enter(Stmt.Function function) {
+        Entry entry = entries.get(function);
+        if (entry == null) {
+            entry = new Entry(function.name.token + ":" + function.name.line);
+            entries.put(function, entry);
+        }
+        entry.calls++;
+        entry.active++;
+        push(nodes[depth - 1].child(entry));
+    }
+
+    void exit() {
+        Entry entry = nodes[depth - 1].entry;
+        long elapsed = pop();
+        if (--entry.active == 0)
+            entry.inclusive += elapsed;
+    }
+
+    void hit(int line) {
+        if (line >= line_hits.length)
+            line_hits = Arrays.copyOf(line_hits, Math.max(line + 1, line_hits.length * 2));
+        line_hits[line]++;
+    }
+
+    void loop(Stmt.While stmt, long iterations, long time) {
+        Loop loop = loops.get(stmt);
+        if (loop == null) {
+            loop = new Loop(stmt.line);
+            loops.put(stmt, loop);
+        }
+        loop.runs++;
+        loop.iterations += iterations;
+        loop.time += time;
+    }
+
+    void report(PrintStream err) {
+        err.printf("profile: %.1f ms%n", ms(total));
+
+        List<Entry> functions = new ArrayList<>(entries.values());
+        functions.sort((a, b) -> Long.compare(b.self, a.self));
+        err.printf("%n  %-28s %12s %14s %12s%n", "function", "calls", "inclusive ms", "self ms");
+        for (Entry e : functions)
+            err.printf("  %-28s %12d %14.1f %12.1f%n", e.name, e.calls, ms(e.inclusive), ms(e.self));
+
+        if (!loops.isEmpty()) {
+            List<Loop> sorted = new ArrayList<>(loops.values());
+            sorted.sort((a, b) -> Long.compare(b.time, a.time));
+            err.printf("%n  %-28s %12s %14s %12s%n", "loop", "runs", "iterations", "ms");
+            for (Loop e : sorted)
+                err.printf("  %-28s %12d %14d %12.1f%n", "line " + e.line, e.runs, e.iterations, ms(e.time));
+        }
+
+        err.printf("%n  %-28s %12s%n", "line", "statements");
+        for (int line = 1; line < line_hits.length; line++)
+            if (line_hits[line] > 0)
+                err.printf("  %-28d %12d%n", line, line_hits[line]);
+    }
+
+    // one line per call path: frames joined by ';', then self time in microseconds
+    void write_stacks(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write_stacks(out, root, root.entry.name);
+        }
+    }
+
+    // helper
+    private void write_stacks(Writer out, Node node, String path) throws IOException {
+        long micros = node.self / 1000;
+        if (micros > 0)
+            out.write(path + " " + micros + "\n");
+        for (Node child : node.children.values())
+            write_stacks(out, child, path + ";" + child.entry.name);
+    }
+
+    private void push(Node node) {
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            starts = Arrays.copyOf(starts, depth * 2);
+            children_time = Arrays.copyOf(children_time, depth * 2);
+        }
+        nodes[depth] = node;
+        starts[depth] = System.nanoTime();
+        children_time[depth] = 0;
+        depth++;
+    }
+
+    // pops the top call, books its self time and gives back how long it took
+    private long pop() {
+        depth--;
+        Node node = nodes[depth];
+        nodes[depth] = null;
+        long elapsed = System.nanoTime() - starts[depth];
+        long self = elapsed - children_time[depth];
+        node.self += self;
+        node.entry.self += self;
+        if (depth > 0)
+            children_time[depth - 1] += elapsed;
+        return elapsed;
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+}
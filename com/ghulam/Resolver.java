@@ -0,0 +1,357 @@
+package com.ghulam;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ghulam.Expr.Assign;
+import com.ghulam.Expr.Binary;
+import com.ghulam.Expr.Call;
+import com.ghulam.Expr.Grouping;
+import com.ghulam.Expr.Literal;
+import com.ghulam.Expr.Logical;
+import com.ghulam.Expr.Unary;
+import com.ghulam.Expr.Variable;
+import com.ghulam.Stmt.Block;
+import com.ghulam.Stmt.Expression;
+import com.ghulam.Stmt.Function;
+import com.ghulam.Stmt.If;
+import com.ghulam.Stmt.Parallel;
+import com.ghulam.Stmt.Print;
+import com.ghulam.Stmt.Return;
+import com.ghulam.Stmt.Var;
+import com.ghulam.Stmt.While;
+
+/*
+ * Static pass that runs between the parser and the interpreter.
+ *
+ * Every local declaration gets a slot index inside its scope, and every
+ * variable use gets (depth, slot): how many environments to walk up and
+ * which slot to read there. Names that are not found in any local scope
+ * are left at depth -1 and are looked up in globals by name.
+ *
+ * The scopes here mirror the environments the interpreter creates:
+ * one per block and one per function call. Functions don't capture
+ * their surrounding scopes, so a function body only sees its own
+ * scopes and globals.
+ *
+ * A lauta_bhai inside a function whose value is a call is marked as a
+ * tail call, the engines run those without growing the stack.
+ *
+ * yaad_rakh_bhai functions (and functions declared inside them) are
+ * checked to be pure: no bol_bhai, and globals may only be called, and
+ * only if they are yaad_rakh_bhai functions of this program too or pure
+ * builtins (see Natives) the program doesn't redefine. A global name is
+ * only taken as pure if nothing else in the program binds it: no plain
+ * karna_bhai or bhai_ye_hai of the same name, and no assignment to it.
+ * Functions passed in as arguments are up to the caller.
+ *
+ * The iterations of a saath_chalao_bhai run at the same time, so its body
+ * (and functions declared in it) may only assign to variables declared in
+ * the body, and it can't lauta_bhai out of it. Reading outer variables is
+ * fine, nothing writes them while the loop runs.
+ */
+public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private static class Scope {
+        final Map<String, Integer> slots = new HashMap<>();
+        int slot_count = 0;
+    }
+
+    private List<Scope> scopes = new ArrayList<>();
+    private boolean in_function = false;
+
+    // innermost yaad_rakh_bhai function being resolved
+    private Function pure_function = null;
+    private final Set<String> pure_names = new HashSet<>(); // globals declared by yaad_rakh_bhai functions
+    private final Set<String> impure_names = new HashSet<>(); // globals bound any other way
+    private final Set<String> global_names = new HashSet<>();
+    private final List<Token> pure_calls = new ArrayList<>();
+
+    // index in `scopes` of the innermost saath_chalao_bhai's iteration scope, -1 outside of one;
+    // 0 in a function declared in its body, which has nothing else to assign to but globals
+    private int parallel_scope = -1;
+    private boolean parallel_body = false; // in its body, not in a function
+
+    public void resolve(List<Stmt> stmts) {
+        resolve_all(stmts);
+
+        // the callee may be declared after the call
+        for (Token name : pure_calls) {
+            boolean builtin = Natives.is_pure(name.token) && !global_names.contains(name.token);
+            boolean pure = pure_names.contains(name.token) && !impure_names.contains(name.token);
+            if (!pure && !builtin)
+                Runner.error(name, " yaad_rakh_bhai function can only call other yaad_rakh_bhai functions and pure builtins");
+        }
+        pure_calls.clear();
+    }
+
+    @Override
+    public Void visitBlockStmt(Block stmt) {
+        // a block that declares nothing runs in the enclosing frame
+        if (!has_declarations(stmt.statements)) {
+            stmt.slot_count = 0;
+            resolve_all(stmt.statements);
+            return null;
+        }
+
+        begin_scope();
+        resolve_all(stmt.statements);
+        stmt.slot_count = end_scope();
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Print stmt) {
+        if (pure_function != null)
+            Runner.error(pure_function.name, " yaad_rakh_bhai function can't use bol_bhai");
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Var stmt) {
+        // initializer still sees the outer binding of the same name
+        if (stmt.initializer != null)
+            resolve(stmt.initializer);
+
+        stmt.slot = declare(stmt.name);
+        if (stmt.slot < 0)
+            impure_names.add(stmt.name.token);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(If stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.then_branch);
+        if (stmt.else_branch != null)
+            resolve(stmt.else_branch);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(While stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitParallelStmt(Parallel stmt) {
+        // the start is worked out once, outside the loop
+        resolve(stmt.counter.initializer);
+
+        int enclosing_scope = parallel_scope;
+        boolean enclosing_body = parallel_body;
+        begin_scope();
+        parallel_scope = scopes.size() - 1;
+        parallel_body = false;
+
+        stmt.counter.slot = declare(stmt.counter.name);
+        resolve(stmt.condition);
+        resolve(stmt.increment);
+        parallel_body = true;
+        resolve(stmt.body);
+        stmt.slot_count = end_scope();
+
+        parallel_scope = enclosing_scope;
+        parallel_body = enclosing_body;
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Function stmt) {
+        stmt.slot = declare(stmt.name);
+        if (stmt.slot < 0)
+            (stmt.pure ? pure_names : impure_names).add(stmt.name.token);
+
+        // function body starts from a fresh chain: params + body -> globals
+        List<Scope> enclosing = scopes;
+        boolean enclosing_function = in_function;
+        Function enclosing_pure = pure_function;
+        int enclosing_parallel = parallel_scope;
+        boolean enclosing_body = parallel_body;
+        scopes = new ArrayList<>();
+        in_function = true;
+        if (parallel_scope >= 0)
+            parallel_scope = 0;
+        parallel_body = false;
+        if (stmt.pure)
+            pure_function = stmt;
+
+        begin_scope();
+        for (Token param : stmt.params)
+            declare(param);
+        resolve_all(stmt.body);
+        stmt.slot_count = end_scope();
+
+        scopes = enclosing;
+        in_function = enclosing_function;
+        pure_function = enclosing_pure;
+        parallel_scope = enclosing_parallel;
+        parallel_body = enclosing_body;
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Return stmt) {
+        // a top-level lauta_bhai just stops the program
+        if (parallel_body)
+            Runner.error(stmt.keyword, " can't lauta_bhai out of a saath_chalao_bhai");
+        stmt.tail = in_function && stmt.value instanceof Call;
+        if (stmt.value != null)
+            resolve(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Grouping expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Variable expr) {
+        int depth = lookup_depth(expr.name);
+        expr.depth = depth;
+        expr.slot = lookup_slot(expr.name, depth);
+
+        // its result would go stale when the global changes
+        if (depth < 0 && pure_function != null)
+            Runner.error(expr.name, " yaad_rakh_bhai function can't read globals");
+        return null;
+    }
+
+    @Override
+    public Void visitAssignExpr(Assign expr) {
+        resolve(expr.value);
+
+        int depth = lookup_depth(expr.name);
+        expr.depth = depth;
+        expr.slot = lookup_slot(expr.name, depth);
+
+        if (depth < 0 && pure_function != null)
+            Runner.error(expr.name, " yaad_rakh_bhai function can't assign to globals");
+        if (depth < 0)
+            impure_names.add(expr.name.token);
+        // an outer variable would be written by all the iterations at once
+        if (parallel_scope >= 0) {
+            int scope = depth < 0 ? -1 : scopes.size() - 1 - depth;
+            if (scope < parallel_scope)
+                Runner.error(expr.name, " saath_chalao_bhai can only assign to variables declared in it");
+            else if (scope == parallel_scope && parallel_body)
+                Runner.error(expr.name, " saath_chalao_bhai counter can't be assigned in the loop");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Logical expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Unary expr) {
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Binary expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Call expr) {
+        if (pure_function != null && expr.callee instanceof Variable) {
+            Variable callee = (Variable) expr.callee;
+            callee.depth = lookup_depth(callee.name);
+            callee.slot = lookup_slot(callee.name, callee.depth);
+            if (callee.depth < 0)
+                pure_calls.add(callee.name);
+        } else {
+            resolve(expr.callee);
+        }
+
+        for (Expr argument : expr.arguments)
+            resolve(argument);
+        return null;
+    }
+
+    // helper
+    private void resolve_all(List<Stmt> stmts) {
+        for (var e : stmts)
+            resolve(e);
+    }
+
+    private void resolve(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void resolve(Expr expr) {
+        expr.accept(this);
+    }
+
+    private void begin_scope() {
+        scopes.add(new Scope());
+    }
+
+    // returns the number of slots the scope needs
+    private int end_scope() {
+        return scopes.remove(scopes.size() - 1).slot_count;
+    }
+
+    private boolean has_declarations(List<Stmt> stmts) {
+        for (Stmt stmt : stmts) {
+            if (stmt instanceof Var || stmt instanceof Function)
+                return true;
+        }
+        return false;
+    }
+
+    // every declaration gets a new slot, a redeclared name just points to the newer one
+    private int declare(Token name) {
+        if (scopes.isEmpty()) {
+            global_names.add(name.token);
+            return -1;
+        }
+
+        var scope = scopes.get(scopes.size() - 1);
+        int slot = scope.slot_count++;
+        scope.slots.put(name.token, slot);
+        return slot;
+    }
+
+    // number of scopes to walk up, -1 if it's a global
+    private int lookup_depth(Token name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            if (scopes.get(i).slots.containsKey(name.token))
+                return scopes.size() - 1 - i;
+        }
+        return -1;
+    }
+
+    private int lookup_slot(Token name, int depth) {
+        if (depth < 0)
+            return -1;
+        return scopes.get(scopes.size() - 1 - depth).slots.get(name.token);
+    }
+}
@@ -1,39 +1,120 @@
 package com.ghulam;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import static com.ghulam.TokenType.EOF_TOKEN;
 
+/*
+ * The command line: one ExecutionContext that writes to System.out and
+ * System.err and exits the JVM on errors. Embedders that want their own
+ * output, or several programs at once, make ExecutionContexts instead.
+ */
 public class Runner {
-    private static final Interpreter Interpreter = new Interpreter();
-    private static boolean some_error = false;
-    private static boolean runtime_error = false;
+    private static final ExecutionContext context = new ExecutionContext(OutputSink.standard(), System.err, true);
 
-    public static void run_source_file(String source_file) {
+    static ExecutionContext context() {
+        return context;
+    }
+
+    // "tree" is the tree-walking Interpreter, "vm" compiles to bytecode first
+    public static void use_engine(String engine) {
         try {
-            byte[] bytes = Files.readAllBytes(Paths.get(source_file));
-            String source = new String(bytes, Charset.defaultCharset());
+            context.use_engine(engine);
+        } catch (IllegalArgumentException ex) {
+            System.err.println("ERROR: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
 
-            // lookup the code
-            // System.out.println(source);
-            // System.out.println("-------------------------------------------");
+    // --no-optimize runs the tree exactly as parsed
+    public static void use_optimizer(boolean enabled) {
+        context.use_optimizer(enabled);
+    }
 
-            run_code(source);
+    // --memo-stats prints yaad_rakh_bhai cache hits/misses when the program ends
+    public static void use_memo_stats(boolean enabled) {
+        context.use_memo_stats(enabled);
+    }
 
-            // ??
-            if (some_error)
-                System.exit(1);
-            if (runtime_error)
+    // keep parsed programs in `dir` and reuse them while the source is unchanged, null turns it off
+    public static void use_cache(Path dir) {
+        context.use_cache(dir);
+    }
+
+    public static Path default_cache_dir() {
+        return AstCache.default_dir();
+    }
+
+    // --profile: per function/loop/line report on stderr at exit, and collapsed stacks in `stacks` if given
+    public static void use_profiler(Path stacks) {
+        context.use_profiler(stacks);
+    }
+
+    // --stats: phase times and counters on stderr at exit, and over JMX while running
+    public static void use_stats() {
+        Stats stats = new Stats();
+        context.use_stats(stats);
+        try {
+            var server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(stats, new javax.management.ObjectName("com.ghulam:type=Stats"));
+        } catch (Exception ex) {
+            System.err.println("NOTE: stats are not on JMX: " + ex.getMessage());
+        }
+    }
+
+    // bol_bhai output: "direct" (System.out), "buffered" or "channel"
+    public static void use_output(String name) {
+        OutputSink sink = OutputSink.named(name);
+        if (sink == null) {
+            System.err.println("ERROR: unknown output '" + name + "', expected 'direct', 'buffered' or 'channel'.");
+            System.exit(1);
+        }
+        use_output(sink);
+    }
+
+    // embedders can hand in any sink, e.g. OutputSink.to(their Appendable)
+    public static void use_output(OutputSink sink) {
+        context.use_output(sink);
+    }
+
+    public static void run_source_file(String source_file) {
+        try {
+            if (!context.run_file(Paths.get(source_file)))
                 System.exit(1);
 
         } catch (Exception ex) {
+            context.output().flush();
             ex.printStackTrace();
         }
     }
 
+    // --batch: every .bhai file in `dir`, `jobs` at a time (0: virtual threads if the JVM has them)
+    public static void run_batch(String dir, int jobs) {
+        try {
+            if (!new BatchRunner(context, jobs).run(Paths.get(dir), System.out))
+                System.exit(1);
+        } catch (IOException | InterruptedException ex) {
+            System.err.println("ERROR: can't run " + dir + ": " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // --daemon: runs scripts for DaemonClient over `socket` until the JVM is killed
+    public static void run_daemon(Path socket) {
+        try {
+            new Daemon(context, socket, Daemon.DEFAULT_PROGRAMS).serve();
+        } catch (IOException ex) {
+            System.err.println("ERROR: can't serve on " + socket + ": " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public static Path default_socket() {
+        return Daemon.default_socket();
+    }
+
     public static void repl_mode() {
         System.out.println("REPL Mode::");
 
@@ -41,61 +122,58 @@ public class Runner {
         BufferedReader reader = new BufferedReader(input);
 
         while (true) {
+            context.output().flush();
             System.out.print(">> ");
             try {
                 String line = reader.readLine();
                 if (line == null || line.equals("exit") || line.equals("exit."))
                     break;
 
-                run_code(line);
+                context.run_code(line);
 
                 // don't terminate repl session for any error
-                some_error = false;
+                context.clear_error();
             } catch (Exception ex) {
+                context.output().flush();
                 ex.printStackTrace();
             }
         }
-    }
-
-    public static void run_code(String source) {
-        Scanner scanner = new Scanner(source);
-        var tokens = scanner.scan_tokens();
-        // System.out.println("count of tokens: " + tokens.size());
 
-        Parser parser = new Parser(tokens);
-        var parsed_out = parser.parse();
+        context.report_stats();
+    }
 
-        // for (var e : tokens)
-        // System.out.println(e);
+    // build a runnable jar instead of running the program, see AotCompiler
+    public static void compile_source_file(String source_file, String jar_file) {
+        try {
+            var parsed_out = context.parse(Paths.get(source_file));
+            if (parsed_out == null)
+                System.exit(1);
 
-        if (some_error) {
-            System.out.println("\nTerminating the prog.");
-            return;
+            new AotCompiler().write_jar(parsed_out, Paths.get(jar_file));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
         }
+    }
 
-        Interpreter.interpret(parsed_out);
+    public static void run_code(String source) {
+        context.run_code(source);
     }
 
+    // the Scanner, Parser, Resolver and engines report to whichever program is running on this thread
     public static void error(int line, String msg) {
-        report(line, "", msg);
+        ExecutionContext.current().error(line, msg);
     }
 
     public static void error(Token token, String msg) {
-        if (token.type == EOF_TOKEN)
-            report(token.line, " at the end", msg);
-        else
-            report(token.line, " at '" + token.token + "'", msg);
+        ExecutionContext.current().error(token, msg);
     }
 
-    public static void runtime_error(RuntimeError error) {
-        System.err.println("runtime error: " + error.getMessage());
-        runtime_error = true;
+    public static void warning(String msg) {
+        ExecutionContext.current().warning(msg);
     }
 
-    private static void report(int line, String where, String msg) {
-        System.err.println("Error at [ line " + line + " ]: " + where + ".");
-        System.out.println("Message: " + msg);
-        some_error = true;
-        System.exit(1); // ??
+    public static void runtime_error(RuntimeError error) {
+        ExecutionContext.current().runtime_error(error);
     }
 }
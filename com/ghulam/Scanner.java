@@ -1,60 +1,175 @@
 package com.ghulam;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import static com.ghulam.TokenType.*;
 
-public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+/*
+ * Tokens are handed out one at a time by next_token(), so the Parser can
+ * pull them as it goes instead of waiting for a full list.
+ *
+ * The source is read through a window of chars: when the scanner runs off
+ * its end, the part of the window before the current token is dropped and
+ * the rest is refilled from the Reader. Only the token being scanned has
+ * to fit, so memory stays flat however big the file is. A String source is
+ * just a window that is already full.
+ */
+public class Scanner implements Iterator<Token> {
+    private static final int WINDOW_SIZE = 8 * 1024;
+
+    private Reader reader; // null once everything has been read
+    private char[] window;
+    private int limit;
 
     private int start_pos = 0;
     private int current_pos = 0;
     private int line = 1;
 
-    private static Map<String, TokenType> keywords;
+    private Token next_token;
+    private boolean done = false;
+    private int count = 0; // tokens handed out, for --stats
+
+    private final Symbols symbols = new Symbols();
+    // number/string literal by its interned lexeme, each distinct literal is made once
+    private final Map<String, Object> literals = new IdentityHashMap<>();
+
+    // lexemes that are always the same text: punctuation and keywords
+    private static final String[] lexemes = new String[TokenType.values().length];
 
     // do this only one time for entire program/session
     static {
-        keywords = new HashMap<>();
-
-        keywords.put("sahi", TRUE_TOKEN);
-        keywords.put("galat", FALSE_TOKEN);
+        fixed(LEFT_PAREN_TOKEN, "(");
+        fixed(RIGHT_PAREN_TOKEN, ")");
+        fixed(LEFT_CURLY_TOKEN, "{");
+        fixed(RIGHT_CURLY_TOKEN, "}");
+        fixed(PLUS_OP_TOKEN, "+");
+        fixed(MINUS_OP_TOKEN, "-");
+        fixed(STAR_OP_TOKEN, "*");
+        fixed(SLASH_OP_TOKEN, "/");
+        fixed(COMMA_TOKEN, ",");
+        fixed(SEMICOLON_TOKEN, ";");
+        fixed(EQUAL_TOKEN, "=");
+        fixed(EQUAL_EQUAL_TOKEN, "==");
+        fixed(LESS_TOKEN, "<");
+        fixed(LESS_EQUAL_TOKEN, "<=");
+        fixed(GREATER_TOKEN, ">");
+        fixed(GREATER_EQUAL_TOKEN, ">=");
+        fixed(BANG_TOKEN, "!");
+        fixed(BANG_EQUAL_TOKEN, "!=");
+
+        fixed(TRUE_TOKEN, "sahi");
+        fixed(FALSE_TOKEN, "galat");
+
+        fixed(IF_TOKEN, "agar_bhai");
+        fixed(ELSE_TOKEN, "warna_bhai");
+        fixed(FOR_TOKEN, "chalao_bhai");
+        fixed(WHILE_TOKEN, "jab_tak_bhai");
+        fixed(PARALLEL_TOKEN, "saath_chalao_bhai");
+
+        fixed(AND_TOKEN, "and");
+        fixed(OR_TOKEN, "or");
+
+        fixed(PRINT_TOKEN, "bol_bhai");
+        fixed(FUNCTION_TOKEN, "karna_bhai");
+        fixed(MEMO_TOKEN, "yaad_rakh_bhai");
+        fixed(RETURN_TOKEN, "lauta_bhai");
+
+        fixed(VAR_TOKEN, "bhai_ye_hai");
+        fixed(NULL_TOKEN, "nalla");
+
+        fixed(LINE_BREAK, "line_break");
+    }
 
-        keywords.put("agar_bhai", IF_TOKEN);
-        keywords.put("warna_bhai", ELSE_TOKEN);
-        keywords.put("chalao_bhai", FOR_TOKEN);
-        keywords.put("jab_tak_bhai", WHILE_TOKEN);
+    private static void fixed(TokenType type, String lexeme) {
+        lexemes[type.ordinal()] = lexeme;
+    }
 
-        keywords.put("and", AND_TOKEN);
-        keywords.put("or", OR_TOKEN);
+    public Scanner(String source) {
+        this.reader = null;
+        this.window = source.toCharArray();
+        this.limit = window.length;
+    }
 
-        keywords.put("bol_bhai", PRINT_TOKEN);
-        keywords.put("karna_bhai", FUNCTION_TOKEN);
-        keywords.put("lauta_bhai", RETURN_TOKEN);
+    public Scanner(Reader reader) {
+        this.reader = reader;
+        this.window = new char[WINDOW_SIZE];
+        this.limit = 0;
+    }
 
-        keywords.put("bhai_ye_hai", VAR_TOKEN);
-        keywords.put("nalla", NULL_TOKEN);
+    // decodes the bytes into the window a piece at a time
+    public Scanner(ByteBuffer bytes, Charset charset) {
+        this(new MappedReader(bytes, charset));
+    }
 
-        keywords.put("line_break", LINE_BREAK);
+    // maps the file and scans it as above
+    public static Scanner of_file(Path path, Charset charset) throws IOException {
+        return new Scanner(map(path), charset);
     }
 
-    public Scanner(String source) {
-        this.source = source;
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
     }
 
+    // whole program at once, for the REPL and tools that want every token
     public List<Token> scan_tokens() {
-        while (!end_of_file()) {
+        List<Token> tokens = new ArrayList<>();
+        while (hasNext())
+            tokens.add(next());
+
+        return tokens;
+    }
+
+    // the next token, EOF_TOKEN once the source is used up (and after that)
+    public Token next_token() {
+        while (next_token == null) {
+            if (end_of_file())
+                return new Token(EOF_TOKEN, "", null, line);
+
             start_pos = current_pos;
             scan_token();
         }
 
-        // add last token for file end
-        tokens.add(new Token(EOF_TOKEN, "", null, line));
+        Token token = next_token;
+        next_token = null;
+        count++;
+        return token;
+    }
 
-        return tokens;
+    public int token_count() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !done;
+    }
+
+    @Override
+    public Token next() {
+        if (done)
+            throw new NoSuchElementException();
+
+        Token token = next_token();
+        done = token.type == EOF_TOKEN;
+        return token;
     }
 
     // token matching mechanism goes here
@@ -90,7 +205,7 @@ public class Scanner {
                 break;
             case '/':
                 if (next_match('/')) {
-                    while (peek() != '\r' && !end_of_file()) // ??
+                    while (peek() != '\n' && peek() != '\r' && !end_of_file())
                         advance();
                 } else {
                     add_token(SLASH_OP_TOKEN);
@@ -125,7 +240,7 @@ public class Scanner {
                 } else if (is_alpha(ch)) {
                     check_for_identifier();
                 } else {
-                    System.err.println("Line: " + line + ", : unexpected character."); // ?
+                    Runner.warning("Line: " + line + ", : unexpected character."); // ?
                 }
                 break;
             }
@@ -137,15 +252,17 @@ public class Scanner {
      * 
      */
 
-    // add this token to list of tokens
+    // this is the token next_token() hands out
     private void add_token(TokenType type) {
         add_token(type, null);
     }
 
-    // add this token to list of tokens with number or string literal
+    // same with a number or string literal
     private void add_token(TokenType type, Object literal) {
-        String token = source.substring(start_pos, current_pos);
-        tokens.add(new Token(type, token, literal, line));
+        String token = lexemes[type.ordinal()];
+        if (token == null)
+            token = symbols.intern(window, start_pos, current_pos - start_pos);
+        next_token = new Token(type, token, literal, line);
     }
 
     // in double quote
@@ -164,8 +281,13 @@ public class Scanner {
         // consume closing quote
         advance();
 
-        String str_val = source.substring(start_pos + 1, current_pos - 1);
-        add_token(STRING_TOKEN, str_val);
+        String token = symbols.intern(window, start_pos, current_pos - start_pos);
+        Object str_val = literals.get(token);
+        if (str_val == null) {
+            str_val = token.substring(1, token.length() - 1);
+            literals.put(token, str_val);
+        }
+        next_token = new Token(STRING_TOKEN, token, str_val, line);
     }
 
     // we only support double numbers
@@ -180,8 +302,13 @@ public class Scanner {
                 advance();
         }
 
-        String num_val = source.substring(start_pos, current_pos);
-        add_token(NUMBER_TOKEN, Double.parseDouble(num_val));
+        String token = symbols.intern(window, start_pos, current_pos - start_pos);
+        Object num_val = literals.get(token);
+        if (num_val == null) {
+            num_val = Double.parseDouble(token);
+            literals.put(token, num_val);
+        }
+        next_token = new Token(NUMBER_TOKEN, token, num_val, line);
     }
 
     // identifier also refered as variable name
@@ -189,31 +316,106 @@ public class Scanner {
         while (is_alpha_numeric(peek()))
             advance();
 
-        String key = source.substring(start_pos, current_pos);
-        var token = keywords.get(key);
+        add_token(keyword());
+    }
 
-        if (token == null)
-            token = IDENTIFIER_TOKEN;
+    // keywords told apart by first char (and length or second char), no lookup and no String made
+    private TokenType keyword() {
+        int length = current_pos - start_pos;
+        switch (window[start_pos]) {
+            case 'a':
+                return length == 3 ? keyword(AND_TOKEN) : keyword(IF_TOKEN);
+            case 'b':
+                return length == 8 ? keyword(PRINT_TOKEN) : keyword(VAR_TOKEN);
+            case 'c':
+                return keyword(FOR_TOKEN);
+            case 'g':
+                return keyword(FALSE_TOKEN);
+            case 'j':
+                return keyword(WHILE_TOKEN);
+            case 'k':
+                return keyword(FUNCTION_TOKEN);
+            case 'l':
+                return length > 1 && window[start_pos + 1] == 'a' ? keyword(RETURN_TOKEN) : keyword(LINE_BREAK);
+            case 'n':
+                return keyword(NULL_TOKEN);
+            case 'o':
+                return keyword(OR_TOKEN);
+            case 's':
+                return length == 4 ? keyword(TRUE_TOKEN) : keyword(PARALLEL_TOKEN);
+            case 'w':
+                return keyword(ELSE_TOKEN);
+            case 'y':
+                return keyword(MEMO_TOKEN);
+
+            default:
+                return IDENTIFIER_TOKEN;
+        }
+    }
 
-        add_token(token);
+    // `type` if the current token is spelled like it, else it is a name
+    private TokenType keyword(TokenType type) {
+        String word = lexemes[type.ordinal()];
+        int length = current_pos - start_pos;
+        if (word.length() != length)
+            return IDENTIFIER_TOKEN;
+        for (int i = 0; i < length; i++)
+            if (window[start_pos + i] != word.charAt(i))
+                return IDENTIFIER_TOKEN;
+        return type;
     }
 
     // check if we are at the end of file
     private boolean end_of_file() {
-        return current_pos >= source.length();
+        return !available(1);
+    }
+
+    // make sure `count` chars from current_pos are in the window, false if the source runs out first
+    private boolean available(int count) {
+        while (current_pos + count > limit) {
+            if (reader == null)
+                return false;
+            fill();
+        }
+        return true;
+    }
+
+    // drop what is before the current token and read more after it
+    private void fill() {
+        if (start_pos > 0) {
+            System.arraycopy(window, start_pos, window, 0, limit - start_pos);
+            limit -= start_pos;
+            current_pos -= start_pos;
+            start_pos = 0;
+        }
+        if (limit == window.length)
+            window = Arrays.copyOf(window, window.length * 2); // a token longer than the window
+
+        try {
+            int read = reader.read(window, limit, window.length - limit);
+            if (read < 0) {
+                reader.close();
+                reader = null;
+            } else {
+                limit += read;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     // consumes the next character in the source file and return it
     private char advance() {
+        available(1);
         ++current_pos;
-        return source.charAt(current_pos - 1);
+        return window[current_pos - 1];
     }
 
     // match the next character is the same as `expected`
     private boolean next_match(char expected) {
         if (end_of_file())
             return false;
-        if (source.charAt(current_pos) != expected)
+        if (window[current_pos] != expected)
             return false;
 
         ++current_pos;
@@ -224,14 +426,14 @@ public class Scanner {
     private char peek() {
         if (end_of_file())
             return '\0';
-        return source.charAt(current_pos);
+        return window[current_pos];
     }
 
     // return character at current position + 1, don't not consume
     private char next_peek() {
-        if (current_pos + 1 >= source.length())
+        if (!available(2))
             return '\0';
-        return source.charAt(current_pos + 1);
+        return window[current_pos + 1];
     }
 
     // only numbers from 0-9
@@ -248,4 +450,39 @@ public class Scanner {
     private boolean is_alpha_numeric(char ch) {
         return is_alpha(ch) || is_digit(ch);
     }
+
+    // decodes a mapped file into whatever char[] the scanner asks to fill
+    private static final class MappedReader extends Reader {
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder;
+        private boolean flushed = false;
+
+        MappedReader(ByteBuffer bytes, Charset charset) {
+            this.bytes = bytes;
+            // bad bytes become U+FFFD, same as new String(bytes, charset) did
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (flushed)
+                return -1;
+
+            CharBuffer target = CharBuffer.wrap(buffer, offset, length);
+            decoder.decode(bytes, target, true);
+            if (!bytes.hasRemaining() && target.position() == offset) {
+                decoder.flush(target);
+                flushed = true;
+            }
+
+            int read = target.position() - offset;
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
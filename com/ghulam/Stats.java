@@ -0,0 +1,346 @@
+package com.ghulam;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ghulam.Expr.Assign;
+import com.ghulam.Expr.Binary;
+import com.ghulam.Expr.Call;
+import com.ghulam.Expr.Grouping;
+import com.ghulam.Expr.Literal;
+import com.ghulam.Expr.Logical;
+import com.ghulam.Expr.Unary;
+import com.ghulam.Expr.Variable;
+import com.ghulam.Stmt.Block;
+import com.ghulam.Stmt.Expression;
+import com.ghulam.Stmt.Function;
+import com.ghulam.Stmt.If;
+import com.ghulam.Stmt.Parallel;
+import com.ghulam.Stmt.Print;
+import com.ghulam.Stmt.Return;
+import com.ghulam.Stmt.Var;
+import com.ghulam.Stmt.While;
+
+/*
+ * --stats: wall time and allocated bytes per phase, plus counters from
+ * the run. Everything adds up over every run_code, so a REPL session or
+ * an embedder sees totals, also over JMX (see StatsMBean).
+ *
+ * Scanning happens while the Parser pulls tokens, so the two are one
+ * phase. Statements, calls, environments and scope depth are counted by
+ * the tree engine only; like the profiler, the Interpreter touches them
+ * only when it has a Stats.
+ *
+ * The counters are written by the thread running the program and read
+ * as they are by JMX, so a reading taken mid-run may lag a little.
+ * saath_chalao_bhai workers count into a Stats of their own, which is
+ * added in once the loop is done.
+ */
+public final class Stats implements StatsMBean {
+    static final int SCAN_PARSE = 0, CACHE_LOAD = 1, OPTIMIZE = 2, RESOLVE = 3, COMPILE = 4, INTERPRET = 5;
+    private static final String[] phase_names = { "scan + parse", "cache load", "optimize", "resolve",
+            "compile (vm)", "interpret" };
+
+    private final long[] phase_nanos = new long[phase_names.length];
+    private final long[] phase_bytes = new long[phase_names.length];
+    private long phase_start;
+    private long phase_start_bytes;
+
+    long runs;
+    long tree_runs; // the counters below tokens and ast nodes only move on these
+    long tokens;
+    long ast_nodes;
+    long statements;
+    long calls;
+    long environments_created;
+    long environments_reused;
+    long deepest_scope;
+
+    // phases go one after the other, begin() then end(phase)
+    void begin() {
+        phase_start_bytes = allocated();
+        phase_start = System.nanoTime();
+    }
+
+    void end(int phase) {
+        phase_nanos[phase] += System.nanoTime() - phase_start;
+        phase_bytes[phase] += allocated() - phase_start_bytes;
+    }
+
+    // run counters of a saath_chalao_bhai worker, after it is done
+    void add(Stats worker) {
+        statements += worker.statements;
+        calls += worker.calls;
+        environments_created += worker.environments_created;
+        environments_reused += worker.environments_reused;
+        deepest_scope = Math.max(deepest_scope, worker.deepest_scope);
+    }
+
+    void count_nodes(List<Stmt> stmts) {
+        NodeCounter counter = new NodeCounter();
+        counter.count(stmts);
+        ast_nodes += counter.count;
+    }
+
+    void report(PrintStream err) {
+        err.printf("%nstats: %d run%s%n", runs, runs == 1 ? "" : "s");
+        err.printf("%n  %-20s %10s %14s%n", "phase", "ms", "allocated KB");
+        for (int i = 0; i < phase_names.length; i++) {
+            if (phase_nanos[i] == 0)
+                continue;
+            err.printf("  %-20s %10.1f %14d%n", phase_names[i], phase_nanos[i] / 1e6, phase_bytes[i] / 1024);
+        }
+
+        err.println();
+        row(err, "tokens", tokens);
+        row(err, "ast nodes", ast_nodes);
+        if (tree_runs > 0) {
+            row(err, "statements run", statements);
+            row(err, "calls", calls);
+            row(err, "environments made", environments_created);
+            row(err, "environments reused", environments_reused);
+            row(err, "deepest scope", deepest_scope);
+        } else {
+            err.printf("  %-20s %10s%n", "statements, calls..", "tree engine only");
+        }
+        row(err, "allocated KB", getAllocatedBytes() / 1024);
+    }
+
+    /**********************************
+     * StatsMBean
+     */
+
+    @Override
+    public long getRuns() {
+        return runs;
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens;
+    }
+
+    @Override
+    public long getAstNodes() {
+        return ast_nodes;
+    }
+
+    @Override
+    public long getStatements() {
+        return statements;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls;
+    }
+
+    @Override
+    public long getEnvironmentsCreated() {
+        return environments_created;
+    }
+
+    @Override
+    public long getEnvironmentsReused() {
+        return environments_reused;
+    }
+
+    @Override
+    public long getDeepestScope() {
+        return deepest_scope;
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        long total = 0;
+        for (long e : phase_bytes)
+            total += e;
+        return total;
+    }
+
+    @Override
+    public double getScanParseMillis() {
+        return phase_nanos[SCAN_PARSE] / 1e6;
+    }
+
+    @Override
+    public double getCacheLoadMillis() {
+        return phase_nanos[CACHE_LOAD] / 1e6;
+    }
+
+    @Override
+    public double getOptimizeMillis() {
+        return phase_nanos[OPTIMIZE] / 1e6;
+    }
+
+    @Override
+    public double getResolveMillis() {
+        return phase_nanos[RESOLVE] / 1e6;
+    }
+
+    @Override
+    public double getCompileMillis() {
+        return phase_nanos[COMPILE] / 1e6;
+    }
+
+    @Override
+    public double getInterpretMillis() {
+        return phase_nanos[INTERPRET] / 1e6;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(phase_nanos, 0);
+        Arrays.fill(phase_bytes, 0);
+        runs = tree_runs = tokens = ast_nodes = statements = calls = 0;
+        environments_created = environments_reused = deepest_scope = 0;
+    }
+
+    // helper
+    private static void row(PrintStream err, String name, long value) {
+        err.printf("  %-20s %10d%n", name, value);
+    }
+
+    // bytes this thread has allocated so far, 0 where the JVM can't tell
+    private static long allocated() {
+        var threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        return 0;
+    }
+
+    private static final class NodeCounter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+        long count = 0;
+
+        void count(List<Stmt> stmts) {
+            for (Stmt stmt : stmts)
+                count(stmt);
+        }
+
+        void count(Stmt stmt) {
+            if (stmt == null)
+                return;
+            count++;
+            stmt.accept(this);
+        }
+
+        void count(Expr expr) {
+            if (expr == null)
+                return;
+            count++;
+            expr.accept(this);
+        }
+
+        @Override
+        public Void visitBlockStmt(Block stmt) {
+            count(stmt.statements);
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStmt(Expression stmt) {
+            count(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitPrintStmt(Print stmt) {
+            count(stmt.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitVarStmt(Var stmt) {
+            count(stmt.initializer);
+            return null;
+        }
+
+        @Override
+        public Void visitIfStmt(If stmt) {
+            count(stmt.condition);
+            count(stmt.then_branch);
+            count(stmt.else_branch);
+            return null;
+        }
+
+        @Override
+        public Void visitWhileStmt(While stmt) {
+            count(stmt.condition);
+            count(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitParallelStmt(Parallel stmt) {
+            count(stmt.counter);
+            count(stmt.condition);
+            count(stmt.increment);
+            count(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionStmt(Function stmt) {
+            count(stmt.body);
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStmt(Return stmt) {
+            count(stmt.value);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Grouping expr) {
+            count(expr.expression);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Literal expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpr(Variable expr) {
+            return null;
+        }
+
+        @Override
+        public Void visitAssignExpr(Assign expr) {
+            count(expr.value);
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpr(Logical expr) {
+            count(expr.left);
+            count(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Unary expr) {
+            count(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Binary expr) {
+            count(expr.left);
+            count(expr.right);
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpr(Call expr) {
+            count(expr.callee);
+            for (Expr argument : expr.arguments)
+                count(argument);
+            return null;
+        }
+    }
+}
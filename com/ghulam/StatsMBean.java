@@ -0,0 +1,40 @@
+package com.ghulam;
+
+/*
+ * What Stats shows over JMX (as com.ghulam:type=Stats). JMX finds
+ * attributes by their getX names, hence the Java-style names here.
+ */
+public interface StatsMBean {
+    long getRuns();
+
+    long getTokens();
+
+    long getAstNodes();
+
+    long getStatements();
+
+    long getCalls();
+
+    long getEnvironmentsCreated();
+
+    long getEnvironmentsReused();
+
+    long getDeepestScope();
+
+    long getAllocatedBytes();
+
+    // wall time per phase, in milliseconds
+    double getScanParseMillis();
+
+    double getCacheLoadMillis();
+
+    double getOptimizeMillis();
+
+    double getResolveMillis();
+
+    double getCompileMillis();
+
+    double getInterpretMillis();
+
+    void reset();
+}
@@ -10,12 +10,16 @@ public abstract class Stmt {
         E visitVarStmt (Var stmt);
         E visitIfStmt (If stmt);
         E visitWhileStmt (While stmt);
+        E visitParallelStmt (Parallel stmt);
         E visitFunctionStmt (Function stmt);
         E visitReturnStmt (Return stmt);
     }
 
+    int line;
+
     public static class Block extends Stmt {
         final List<Stmt> statements;
+        int slot_count;
 
         public Block(List<Stmt> statements) {
             this.statements = statements;
@@ -56,6 +60,7 @@ public abstract class Stmt {
     public static class Var extends Stmt {
         final Token name;
         final Expr initializer;
+        int slot = -1;
 
         public Var(Token name, Expr initializer) {
             this.name = name;
@@ -100,10 +105,35 @@ public abstract class Stmt {
         }
     }
 
+    public static class Parallel extends Stmt {
+        final Token keyword;
+        final Var counter;
+        final Expr condition;
+        final Expr increment;
+        final Stmt body;
+        int slot_count;
+
+        public Parallel(Token keyword, Var counter, Expr condition, Expr increment, Stmt body) {
+            this.keyword = keyword;
+            this.counter = counter;
+            this.condition = condition;
+            this.increment = increment;
+            this.body = body;
+        }
+
+        @Override
+        <E> E accept(Visitor<E> visitor) {
+            return visitor.visitParallelStmt(this);
+        }
+    }
+
     public static class Function extends Stmt {
         final Token name;
         final List<Token> params;
         final List<Stmt> body;
+        int slot = -1;
+        int slot_count;
+        boolean pure;
 
         public Function(Token name, List<Token> params, List<Stmt> body) {
             this.name = name;
@@ -120,6 +150,7 @@ public abstract class Stmt {
     public static class Return extends Stmt {
         final Token keyword;
         final Expr value;
+        boolean tail;
 
         public Return(Token keyword, Expr value) {
             this.keyword = keyword;
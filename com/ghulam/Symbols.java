@@ -0,0 +1,67 @@
+package com.ghulam;
+
+/*
+ * Intern table for the Scanner. A name is looked up straight from the
+ * scanner's char window, so a name seen before gives back the same String
+ * without making a new one. The hash is String.hashCode() of the chars,
+ * which String caches, so probing costs a compare of the chars at most.
+ *
+ * Open addressing, kept at most half full.
+ */
+final class Symbols {
+    private String[] table = new String[256];
+    private int count = 0;
+
+    String intern(char[] chars, int from, int length) {
+        int hash = 0;
+        for (int i = from; i < from + length; i++)
+            hash = 31 * hash + chars[i];
+
+        int mask = table.length - 1;
+        int index = mix(hash) & mask;
+        for (String e = table[index]; e != null; e = table[index]) {
+            if (e.hashCode() == hash && same(e, chars, from, length))
+                return e;
+            index = (index + 1) & mask;
+        }
+
+        String symbol = new String(chars, from, length);
+        table[index] = symbol;
+        if (++count * 2 > table.length)
+            grow();
+        return symbol;
+    }
+
+    int size() {
+        return count;
+    }
+
+    // helper
+    private static boolean same(String symbol, char[] chars, int from, int length) {
+        if (symbol.length() != length)
+            return false;
+        for (int i = 0; i < length; i++)
+            if (symbol.charAt(i) != chars[from + i])
+                return false;
+        return true;
+    }
+
+    // names differ mostly in their last chars, spread those into the low bits
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String e : old) {
+            if (e == null)
+                continue;
+            int index = mix(e.hashCode()) & mask;
+            while (table[index] != null)
+                index = (index + 1) & mask;
+            table[index] = e;
+        }
+    }
+}
@@ -35,6 +35,7 @@ public enum TokenType {
     ELSE_TOKEN,
     FOR_TOKEN,
     WHILE_TOKEN,
+    PARALLEL_TOKEN,
 
     // logical
     AND_TOKEN,
@@ -45,6 +46,7 @@ public enum TokenType {
     STRING_TOKEN,
     NUMBER_TOKEN,
     FUNCTION_TOKEN,
+    MEMO_TOKEN, // yaad_rakh_bhai karna_bhai ...
     RETURN_TOKEN,
 
     VAR_TOKEN, // var keyword
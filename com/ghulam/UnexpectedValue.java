@@ -0,0 +1,13 @@
+package com.ghulam;
+
+// a node specialized for numbers got something else, value is what it produced instead
+public class UnexpectedValue extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final Object value;
+
+    UnexpectedValue(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+}
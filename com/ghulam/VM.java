@@ -0,0 +1,360 @@
+package com.ghulam;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Stack based VM running BytecodeCompiler output.
+ *
+ * A call frame is a window of the value stack: the callee's locals start
+ * where its arguments were pushed (params are slots 0..arity-1), and its
+ * operand stack sits right after max_locals.
+ *
+ * TAIL_CALL to a VmFunction reuses the caller's frame: the callee and its
+ * arguments are moved down over the caller's, so tail recursion runs in
+ * constant space.
+ *
+ * Calling a yaad_rakh_bhai function looks in its Memo first; on a miss the
+ * frame remembers the memo and key, and RETURN stores the result.
+ *
+ * saath_chalao_bhai runs one iteration after the other here, between
+ * PARALLEL_ENTER and PARALLEL_EXIT; no global is assigned in between, the
+ * same as on the tree engine.
+ */
+public class VM {
+    private static final Object UNDEFINED = new Object();
+    private static final int MAX_FRAMES = 1 << 20;
+
+    // globals are numbered once by name, then accessed by index
+    private final Map<String, Integer> global_names = new HashMap<>();
+    private Object[] globals = new Object[64];
+
+    private OutputSink out = OutputSink.standard();
+    Memo.Counters memo_counters = new Memo.Counters(); // for --memo-stats, read by BytecodeCompiler
+
+    private Object[] stack = new Object[1024];
+    private VmFunction[] frame_functions = new VmFunction[64];
+    private int[] frame_ips = new int[64];
+    private int[] frame_bases = new int[64];
+    private Memo[] frame_memos = new Memo[64];
+    private Object[] frame_keys = new Object[64];
+
+    public VM() {
+        Arrays.fill(globals, UNDEFINED);
+        for (var e : Natives.all().entrySet())
+            globals[global_index(e.getKey())] = e.getValue();
+    }
+
+    int global_index(String name) {
+        Integer index = global_names.get(name);
+        if (index != null)
+            return index;
+
+        index = global_names.size();
+        global_names.put(name, index);
+        if (index == globals.length) {
+            int old_length = globals.length;
+            globals = Arrays.copyOf(globals, old_length * 2);
+            Arrays.fill(globals, old_length, globals.length, UNDEFINED);
+        }
+        return index;
+    }
+
+    public void set_output(OutputSink out) {
+        this.out = out;
+    }
+
+    public void interpret(VmFunction script) {
+        try {
+            run(script);
+        } catch (RuntimeError error) {
+            Runner.runtime_error(error);
+        }
+    }
+
+    @SuppressWarnings("fallthrough") // TAIL_CALL into CALL
+    private void run(VmFunction script) {
+        Object[] stack = ensure_stack(script.max_locals + script.max_stack);
+        int frame_count = 0;
+
+        VmFunction function = script;
+        int[] code = script.chunk.code;
+        Object[] constants = script.chunk.constants;
+        int ip = 0;
+        int base = 0;
+        int sp = script.max_locals;
+        int parallel_depth = 0; // saath_chalao_bhai loops running
+
+        for (;;) {
+            switch (code[ip++]) {
+                case OpCode.CONSTANT:
+                    stack[sp++] = constants[code[ip++]];
+                    break;
+                case OpCode.NIL:
+                    stack[sp++] = null;
+                    break;
+                case OpCode.TRUE:
+                    stack[sp++] = true;
+                    break;
+                case OpCode.FALSE:
+                    stack[sp++] = false;
+                    break;
+                case OpCode.POP:
+                    sp--;
+                    break;
+
+                case OpCode.GET_LOCAL:
+                    stack[sp++] = stack[base + code[ip++]];
+                    break;
+                case OpCode.SET_LOCAL:
+                    stack[base + code[ip++]] = stack[sp - 1];
+                    break;
+                case OpCode.DEFINE_LOCAL:
+                    stack[base + code[ip++]] = stack[--sp];
+                    break;
+                case OpCode.GET_GLOBAL: {
+                    Object value = globals[code[ip++]];
+                    int name = code[ip++];
+                    if (value == UNDEFINED)
+                        throw undefined((Token) constants[name]);
+                    stack[sp++] = value;
+                    break;
+                }
+                case OpCode.SET_GLOBAL: {
+                    int index = code[ip++];
+                    int name = code[ip++];
+                    if (parallel_depth > 0)
+                        throw global_in_parallel((Token) constants[name]);
+                    if (globals[index] == UNDEFINED)
+                        throw undefined((Token) constants[name]);
+                    globals[index] = stack[sp - 1];
+                    break;
+                }
+                case OpCode.DEFINE_GLOBAL:
+                    globals[code[ip++]] = stack[--sp];
+                    break;
+
+                case OpCode.EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Values.is_equal(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Values.is_equal(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.GREATER: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] > (double) right;
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] >= (double) right;
+                    break;
+                }
+                case OpCode.LESS: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] < (double) right;
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] <= (double) right;
+                    break;
+                }
+                case OpCode.ADD: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Values.add(stack[sp - 1], right);
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] - (double) right;
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] * (double) right;
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = (double) stack[sp - 1] / (double) right;
+                    break;
+                }
+                case OpCode.NOT:
+                    stack[sp - 1] = !Values.is_truthy(stack[sp - 1]);
+                    break;
+                case OpCode.NEGATE:
+                    stack[sp - 1] = -(double) stack[sp - 1];
+                    break;
+
+                case OpCode.PRINT:
+                    out.print(Values.stringfy(stack[--sp]));
+                    break;
+                case OpCode.JUMP:
+                    ip = code[ip];
+                    break;
+                case OpCode.JUMP_IF_FALSE:
+                    ip = Values.is_truthy(stack[sp - 1]) ? ip + 1 : code[ip];
+                    break;
+                case OpCode.JUMP_IF_TRUE:
+                    ip = Values.is_truthy(stack[sp - 1]) ? code[ip] : ip + 1;
+                    break;
+                case OpCode.POP_JUMP_IF_FALSE:
+                    ip = Values.is_truthy(stack[--sp]) ? ip + 1 : code[ip];
+                    break;
+
+                case OpCode.TAIL_CALL: {
+                    int arg_count = code[ip];
+                    Object callee = stack[sp - arg_count - 1];
+                    if (callee instanceof VmFunction && ((VmFunction) callee).arity == arg_count
+                            && ((VmFunction) callee).memo == null) {
+                        System.arraycopy(stack, sp - arg_count - 1, stack, base - 1, arg_count + 1);
+
+                        function = (VmFunction) callee;
+                        stack = ensure_stack(base + function.max_locals + function.max_stack);
+                        code = function.chunk.code;
+                        constants = function.chunk.constants;
+                        ip = 0;
+                        sp = base + function.max_locals;
+                        break;
+                    }
+                    // anything else (errors included) is a plain CALL, the RETURN after it
+                    // returns the result
+                    // fall through
+                }
+                case OpCode.CALL: {
+                    int arg_count = code[ip++];
+                    Token paren = (Token) constants[code[ip++]];
+                    Object callee = stack[sp - arg_count - 1];
+
+                    if (!(callee instanceof VmFunction)) {
+                        if (!(callee instanceof BhaiCallable))
+                            throw new RuntimeError(paren, "Can only call functions");
+
+                        // tree-walker or Java callables get a plain argument list
+                        BhaiCallable callable = (BhaiCallable) callee;
+                        if (callable.arity() >= 0 && arg_count != callable.arity())
+                            throw arity_error(paren, callable.arity(), arg_count);
+                        List<Object> arguments = new ArrayList<>(arg_count);
+                        for (int i = sp - arg_count; i < sp; i++)
+                            arguments.add(stack[i]);
+                        sp -= arg_count;
+                        stack[sp - 1] = callable.call(null, arguments);
+                        break;
+                    }
+
+                    if (arg_count != ((VmFunction) callee).arity)
+                        throw arity_error(paren, ((VmFunction) callee).arity, arg_count);
+
+                    Memo memo = ((VmFunction) callee).memo;
+                    Object key = null;
+                    if (memo != null) {
+                        key = Memo.key(stack, sp - arg_count, arg_count);
+                        Object value = memo.get(key);
+                        if (value != Memo.MISSING) {
+                            sp -= arg_count;
+                            stack[sp - 1] = value;
+                            break;
+                        }
+                    }
+
+                    if (frame_count == MAX_FRAMES)
+                        throw new StackOverflowError("too many nested bhai calls");
+                    if (frame_count == frame_functions.length)
+                        grow_frames();
+
+                    frame_functions[frame_count] = function;
+                    frame_ips[frame_count] = ip;
+                    frame_bases[frame_count] = base;
+                    frame_memos[frame_count] = memo;
+                    frame_keys[frame_count] = key;
+                    frame_count++;
+
+                    function = (VmFunction) callee;
+                    base = sp - arg_count;
+                    stack = ensure_stack(base + function.max_locals + function.max_stack);
+                    code = function.chunk.code;
+                    constants = function.chunk.constants;
+                    ip = 0;
+                    sp = base + function.max_locals;
+                    break;
+                }
+                case OpCode.RETURN: {
+                    Object result = stack[sp - 1];
+                    if (frame_count == 0)
+                        return;
+
+                    // drop callee and arguments, leave the result in their place
+                    sp = base;
+                    stack[sp - 1] = result;
+
+                    frame_count--;
+                    if (frame_memos[frame_count] != null) {
+                        frame_memos[frame_count].put(frame_keys[frame_count], result);
+                        frame_memos[frame_count] = null;
+                        frame_keys[frame_count] = null;
+                    }
+                    function = frame_functions[frame_count];
+                    ip = frame_ips[frame_count];
+                    base = frame_bases[frame_count];
+                    frame_functions[frame_count] = null;
+                    code = function.chunk.code;
+                    constants = function.chunk.constants;
+                    break;
+                }
+
+                case OpCode.PARALLEL_ENTER: {
+                    int slot = base + code[ip++];
+                    int keyword = code[ip++];
+                    if (!(stack[slot] instanceof Double) || !(stack[slot + 1] instanceof Double))
+                        throw new RuntimeError((Token) constants[keyword],
+                                " saath_chalao_bhai needs numbers to count from and to.");
+                    stack[slot + 2] = 0.0;
+                    parallel_depth++;
+                    break;
+                }
+                case OpCode.PARALLEL_EXIT:
+                    parallel_depth--;
+                    break;
+
+                default:
+                    throw new IllegalStateException("unknown opcode " + code[ip - 1]);
+            }
+        }
+    }
+
+    // helper
+    private RuntimeError undefined(Token name) {
+        return new RuntimeError(name, " undefined variable " + name.token + ".");
+    }
+
+    private RuntimeError arity_error(Token paren, int arity, int arg_count) {
+        return new RuntimeError(paren, "Expected " + arity + " arguments but got " + arg_count + ".");
+    }
+
+    private RuntimeError global_in_parallel(Token name) {
+        return new RuntimeError(name, " saath_chalao_bhai can't assign to the global " + name.token + ".");
+    }
+
+    private Object[] ensure_stack(int size) {
+        if (size > stack.length)
+            stack = Arrays.copyOf(stack, Math.max(size, stack.length * 2));
+        return stack;
+    }
+
+    private void grow_frames() {
+        int length = frame_functions.length * 2;
+        frame_functions = Arrays.copyOf(frame_functions, length);
+        frame_ips = Arrays.copyOf(frame_ips, length);
+        frame_bases = Arrays.copyOf(frame_bases, length);
+        frame_memos = Arrays.copyOf(frame_memos, length);
+        frame_keys = Arrays.copyOf(frame_keys, length);
+    }
+}
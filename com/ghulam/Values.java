@@ -0,0 +1,92 @@
+package com.ghulam;
+
+/*
+ * Value semantics shared by every engine (Interpreter, VM), so they
+ * print, compare and add the same way.
+ */
+final class Values {
+    private Values() {
+    }
+
+    static String stringfy(Object object) {
+        if (object == null)
+            return "nalla";
+
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return object.toString();
+    }
+
+    static boolean is_truthy(Object obj) {
+        if (obj == null)
+            return false;
+        if (obj instanceof Boolean)
+            return (boolean) obj;
+        return true;
+    }
+
+    static boolean is_equal(Object o1, Object o2) {
+        o1 = BhaiString.flatten(o1);
+        o2 = BhaiString.flatten(o2);
+
+        if (o1 == null && o2 == null)
+            return true;
+        if (o1 == null)
+            return false;
+
+        return o1.equals(o2);
+    }
+
+    // '+' on numbers and strings, strings being String or BhaiString
+    static Object add(Object left, Object right) {
+        if (left instanceof Double && right instanceof Double)
+            return (double) left + (double) right;
+
+        if (left instanceof CharSequence && right instanceof Double)
+            return BhaiString.concat((CharSequence) left, String.valueOf(right));
+
+        if (left instanceof Double && right instanceof CharSequence)
+            return BhaiString.concat(String.valueOf(left), right.toString());
+
+        if (left instanceof CharSequence && right instanceof CharSequence)
+            return BhaiString.concat((CharSequence) left, right.toString());
+
+        // any other mix fails the double cast, same as '*'
+        return (double) left * (double) right;
+    }
+
+    // every binary operator on already evaluated operands
+    static Object binary(TokenType operator, Object left, Object right) {
+        switch (operator) {
+            case MINUS_OP_TOKEN:
+                return (double) left - (double) right;
+            case PLUS_OP_TOKEN:
+                return add(left, right);
+            case STAR_OP_TOKEN:
+                return (double) left * (double) right;
+            case SLASH_OP_TOKEN:
+                return (double) left / (double) right;
+            case EQUAL_EQUAL_TOKEN:
+                return is_equal(left, right);
+            case BANG_EQUAL_TOKEN:
+                return !is_equal(left, right);
+            case LESS_TOKEN:
+                return (double) left < (double) right;
+            case LESS_EQUAL_TOKEN:
+                return (double) left <= (double) right;
+            case GREATER_TOKEN:
+                return (double) left > (double) right;
+            case GREATER_EQUAL_TOKEN:
+                return (double) left >= (double) right;
+
+            default:
+                return null;
+        }
+    }
+}
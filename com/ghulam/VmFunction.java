@@ -0,0 +1,19 @@
+package com.ghulam;
+
+/*
+ * A karna_bhai function compiled for the VM. Only the VM can call it, by
+ * pushing a frame, so it is not a BhaiCallable.
+ */
+public class VmFunction {
+    final String name;
+    final int arity;
+    final Chunk chunk = new Chunk();
+    int max_locals; // params + every local slot live at once
+    int max_stack; // deepest operand stack above the locals
+    Memo memo; // only for yaad_rakh_bhai functions
+
+    VmFunction(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+}